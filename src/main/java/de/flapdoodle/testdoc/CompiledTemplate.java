@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * template parsed once into literal segments and placeholder labels,
+ * literal(i) is followed by label(i), the last literal has no label,
+ * every distinct label is bound to a slot, so rendering only needs
+ * one array of replacements
+ */
+final class CompiledTemplate {
+
+	private static final int ENCODE_BUFFER_SIZE = 8192;
+	// change if parsing changes
+	private static final int CACHE_VERSION = 1;
+
+	private final String source;
+	private final int[] literalStart;
+	private final int[] literalEnd;
+	private final String[] labels;
+	// slot of labels[i]
+	private final int[] slotOfLabel;
+	private final String[] slotNames;
+	private final Map<String, Integer> slotByName;
+
+	private CompiledTemplate(String source, int[] literalStart, int[] literalEnd, String[] labels) {
+		this.source = source;
+		this.literalStart = literalStart;
+		this.literalEnd = literalEnd;
+		this.labels = labels;
+
+		this.slotByName = new LinkedHashMap<>();
+		this.slotOfLabel = new int[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			Integer slot = slotByName.get(labels[i]);
+			if (slot == null) {
+				slot = slotByName.size();
+				slotByName.put(labels[i], slot);
+			}
+			slotOfLabel[i] = slot;
+		}
+		this.slotNames = slotByName.keySet().toArray(new String[0]);
+	}
+
+	static CompiledTemplate parse(String source, Delimiters pattern) {
+		return parse(source, pattern, DiskCache.instance());
+	}
+
+	static CompiledTemplate parse(String source, Delimiters pattern, Optional<DiskCache> diskCache) {
+		return diskCache
+			.map(cache -> cache.computeIfAbsent("templates", CACHE_VERSION, ContentHash.create()
+					.add(pattern.open()).add(pattern.close()).add(pattern.labelCharacters())
+					.add(source).asHex(),
+				codec(source), () -> parseNow(source, pattern)))
+			.orElseGet(() -> parseNow(source, pattern));
+	}
+
+	private static CompiledTemplate parseNow(String source, Delimiters pattern) {
+		List<int[]> literals = new ArrayList<>();
+		List<String> labels = new ArrayList<>();
+
+		int[] label = new int[2];
+		int lastEnd = 0;
+		int start;
+		while ((start = pattern.find(source, lastEnd, label)) != -1) {
+			literals.add(new int[] { lastEnd, start });
+			labels.add(source.substring(label[0], label[1]));
+			lastEnd = label[1] + pattern.close().length();
+		}
+		literals.add(new int[] { lastEnd, source.length() });
+
+		int[] literalStart = new int[literals.size()];
+		int[] literalEnd = new int[literals.size()];
+		for (int i = 0; i < literals.size(); i++) {
+			literalStart[i] = literals.get(i)[0];
+			literalEnd[i] = literals.get(i)[1];
+		}
+		return new CompiledTemplate(source, literalStart, literalEnd, labels.toArray(new String[0]));
+	}
+
+	private static DiskCache.Codec<CompiledTemplate> codec(String source) {
+		return new DiskCache.Codec<CompiledTemplate>() {
+			@Override
+			public void write(CompiledTemplate value, DataOutput out) throws IOException {
+				out.writeInt(value.labels.length);
+				for (int i = 0; i < value.literalStart.length; i++) {
+					out.writeInt(value.literalStart[i]);
+					out.writeInt(value.literalEnd[i]);
+				}
+				for (String label : value.labels) {
+					out.writeUTF(label);
+				}
+			}
+
+			@Override
+			public CompiledTemplate read(DataInput in) throws IOException {
+				int placeholders = in.readInt();
+				if (placeholders < 0 || placeholders > source.length()) {
+					throw new IOException("invalid number of placeholders: " + placeholders);
+				}
+				int[] literalStart = new int[placeholders + 1];
+				int[] literalEnd = new int[placeholders + 1];
+				int lastEnd = 0;
+				for (int i = 0; i < literalStart.length; i++) {
+					literalStart[i] = in.readInt();
+					literalEnd[i] = in.readInt();
+					if (literalStart[i] < lastEnd || literalEnd[i] < literalStart[i] || literalEnd[i] > source.length()) {
+						throw new IOException("invalid literal " + i + ": " + literalStart[i] + "-" + literalEnd[i]);
+					}
+					lastEnd = literalEnd[i];
+				}
+				String[] labels = new String[placeholders];
+				for (int i = 0; i < placeholders; i++) {
+					labels[i] = in.readUTF();
+				}
+				return new CompiledTemplate(source, literalStart, literalEnd, labels);
+			}
+		};
+	}
+
+	int placeholders() {
+		return labels.length;
+	}
+
+	String label(int index) {
+		return labels[index];
+	}
+
+	/**
+	 * @return labels in order of first appearance
+	 */
+	Set<String> labels() {
+		return Collections.unmodifiableSet(slotByName.keySet());
+	}
+
+	int slots() {
+		return slotNames.length;
+	}
+
+	String slotName(int slot) {
+		return slotNames[slot];
+	}
+
+	/**
+	 * @return slot of this label, -1 if the template does not use it
+	 */
+	int slotOf(String label) {
+		Integer slot = slotByName.get(label);
+		return slot != null ? slot : -1;
+	}
+
+	/**
+	 * resolves every slot once
+	 */
+	Fragment[] bind(Function<String, ? extends Fragment> variableLookUp) {
+		Fragment[] ret = new Fragment[slotNames.length];
+		for (int i = 0; i < slotNames.length; i++) {
+			ret[i] = Preconditions.checkNotNull(variableLookUp.apply(slotNames[i]), "no replacement for %s", slotNames[i]);
+		}
+		return ret;
+	}
+
+	private void checkBound(Fragment[] slots) {
+		Preconditions.checkArgument(slots.length == slotNames.length, "slots: %s != %s", slots.length, slotNames.length);
+		for (int i = 0; i < slots.length; i++) {
+			Preconditions.checkNotNull(slots[i], "no replacement for %s", slotNames[i]);
+		}
+	}
+
+	void renderTo(Fragment[] slots, Writer writer) throws IOException {
+		checkBound(slots);
+		Fragment.Chunks chunks = (chars, start, end) -> writer.write(chars, start, end - start);
+		for (int i = 0; i < labels.length; i++) {
+			chunks.write(source, literalStart[i], literalEnd[i]);
+			slots[slotOfLabel[i]].writeTo(chunks);
+		}
+		chunks.write(source, literalStart[labels.length], literalEnd[labels.length]);
+	}
+
+	void renderTo(Fragment[] slots, WritableByteChannel channel, Charset charset) throws IOException {
+		checkBound(slots);
+		CharsetEncoder encoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer buffer = ByteBuffer.allocate(ENCODE_BUFFER_SIZE);
+		Fragment.Chunks chunks = (chars, start, end) -> encode(encoder, CharBuffer.wrap(chars, start, end), buffer, channel, false);
+
+		for (int i = 0; i < labels.length; i++) {
+			chunks.write(source, literalStart[i], literalEnd[i]);
+			slots[slotOfLabel[i]].writeTo(chunks);
+		}
+		encode(encoder, CharBuffer.wrap(source, literalStart[labels.length], literalEnd[labels.length]), buffer, channel, true);
+
+		while (encoder.flush(buffer).isOverflow()) {
+			drain(buffer, channel);
+		}
+		drain(buffer, channel);
+	}
+
+	private static void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer buffer, WritableByteChannel channel, boolean endOfInput) throws IOException {
+		while (encoder.encode(chars, buffer, endOfInput).isOverflow()) {
+			drain(buffer, channel);
+		}
+	}
+
+	private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	String render(Fragment[] slots) {
+		checkBound(slots);
+		StringBuilder sb = new StringBuilder(source.length());
+		Fragment.Chunks chunks = sb::append;
+		try {
+			for (int i = 0; i < labels.length; i++) {
+				chunks.write(source, literalStart[i], literalEnd[i]);
+				slots[slotOfLabel[i]].writeTo(chunks);
+			}
+		}
+		catch (IOException iox) {
+			throw new RuntimeException(iox);
+		}
+		sb.append(source, literalStart[labels.length], literalEnd[labels.length]);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * settings are read like junit configuration parameters: system
+ * properties first, then junit-platform.properties from the classpath
+ */
+abstract class Configuration {
+
+	private static final String JUNIT_PLATFORM_PROPERTIES = "junit-platform.properties";
+
+	private Configuration() {
+		// no instance
+	}
+
+	static Optional<String> get(String key) {
+		String value = System.getProperty(key);
+		if (value != null) {
+			return Optional.of(value);
+		}
+		return Optional.ofNullable(JunitPlatformProperties.PROPERTIES.getProperty(key));
+	}
+
+	static boolean getBoolean(String key) {
+		return get(key).map(String::trim).map(Boolean::parseBoolean).orElse(false);
+	}
+
+	static Optional<Long> getLong(String key) {
+		return get(key).map(String::trim).map(Long::parseLong);
+	}
+
+	static List<String> getList(String key) {
+		return get(key)
+			.map(value -> Arrays.stream(value.split(","))
+				.map(String::trim)
+				.filter(it -> !it.isEmpty())
+				.collect(Collectors.toList()))
+			.orElse(Collections.emptyList());
+	}
+
+	private static final class JunitPlatformProperties {
+		static final Properties PROPERTIES = load();
+
+		private static Properties load() {
+			Properties ret = new Properties();
+			ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+			if (classLoader == null) {
+				classLoader = Configuration.class.getClassLoader();
+			}
+			try (InputStream is = classLoader.getResourceAsStream(JUNIT_PLATFORM_PROPERTIES)) {
+				if (is != null) {
+					ret.load(is);
+				}
+			}
+			catch (IOException iox) {
+				throw new RuntimeException("could not read " + JUNIT_PLATFORM_PROPERTIES, iox);
+			}
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * sha-256 over a sequence of values, every value is written with its length,
+ * so different sequences can not collide by concatenation
+ */
+final class ContentHash {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest digest;
+	private final byte[] number = new byte[8];
+
+	private ContentHash(MessageDigest digest) {
+		this.digest = digest;
+	}
+
+	static ContentHash create() {
+		try {
+			return new ContentHash(MessageDigest.getInstance("SHA-256"));
+		}
+		catch (NoSuchAlgorithmException nsax) {
+			throw new IllegalStateException("sha-256 not supported", nsax);
+		}
+	}
+
+	ContentHash add(long value) {
+		for (int i = 0; i < 8; i++) {
+			number[i] = (byte) (value >>> (56 - 8 * i));
+		}
+		digest.update(number);
+		return this;
+	}
+
+	ContentHash add(byte[] value) {
+		add(value.length);
+		digest.update(value);
+		return this;
+	}
+
+	ContentHash add(String value) {
+		return add(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	ContentHash add(List<String> values) {
+		add(values.size());
+		values.forEach(this::add);
+		return this;
+	}
+
+	/**
+	 * everything written to this channel is added without a length,
+	 * so it should be the only value of this hash
+	 */
+	WritableByteChannel channel() {
+		return new WritableByteChannel() {
+			@Override
+			public int write(ByteBuffer src) {
+				int count = src.remaining();
+				digest.update(src);
+				return count;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	String asHex() {
+		byte[] hash = digest.digest();
+		char[] ret = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			ret[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+			ret[2 * i + 1] = HEX[hash[i] & 0xf];
+		}
+		return new String(ret);
+	}
+}
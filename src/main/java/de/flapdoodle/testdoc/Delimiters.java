@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * placeholder syntax of a template: open delimiter, label, close delimiter,
+ * found by searching for the delimiters, not with a regex
+ *
+ * @see ReplacementPattern for the predefined ones
+ */
+public final class Delimiters {
+
+	/**
+	 * chars of a label if nothing else is set
+	 */
+	public static final String LABEL_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_:.";
+
+	private final String open;
+	private final String close;
+	private final String labelCharacters;
+	private final BitSet isLabelCharacter;
+	// if true, the end of a label is not the first close delimiter found
+	private final boolean closeStartsWithLabelCharacter;
+	private volatile Pattern regex;
+
+	private Delimiters(String open, String close, String labelCharacters) {
+		Preconditions.checkArgument(!open.isEmpty(), "open delimiter is empty");
+		Preconditions.checkArgument(!close.isEmpty(), "close delimiter is empty");
+		Preconditions.checkArgument(!labelCharacters.isEmpty(), "no label characters");
+		this.open = open;
+		this.close = close;
+		this.isLabelCharacter = new BitSet();
+		labelCharacters.chars().forEach(isLabelCharacter::set);
+		this.labelCharacters = isLabelCharacter.stream()
+			.collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+			.toString();
+		this.closeStartsWithLabelCharacter = isLabelCharacter.get(close.charAt(0));
+	}
+
+	/**
+	 * @return pattern open + label + close, label made of {@link #LABEL_CHARACTERS}
+	 */
+	public static Delimiters of(String open, String close) {
+		return of(open, close, LABEL_CHARACTERS);
+	}
+
+	/**
+	 * @param labelCharacters all chars allowed in a label
+	 */
+	public static Delimiters of(String open, String close, String labelCharacters) {
+		return new Delimiters(
+			Preconditions.checkNotNull(open, "open is null"),
+			Preconditions.checkNotNull(close, "close is null"),
+			Preconditions.checkNotNull(labelCharacters, "labelCharacters is null"));
+	}
+
+	public String open() {
+		return open;
+	}
+
+	public String close() {
+		return close;
+	}
+
+	public String labelCharacters() {
+		return labelCharacters;
+	}
+
+	/**
+	 * @return placeholder for this label
+	 */
+	public String placeholder(String label) {
+		return open + label + close;
+	}
+
+	/**
+	 * placeholders are not found with a regex,
+	 * this regex matches the same placeholders (groups all and label)
+	 */
+	Matcher matcher(String source) {
+		Pattern ret = regex;
+		if (ret == null) {
+			StringBuilder labelClass = new StringBuilder();
+			isLabelCharacter.stream().forEach(c -> labelClass.append(String.format("\\x{%x}", c)));
+			ret = Pattern.compile("(?<all>" + Pattern.quote(open) + "(?<label>[" + labelClass + "]+)" + Pattern.quote(close) + ")");
+			regex = ret;
+		}
+		return ret.matcher(source);
+	}
+
+	/**
+	 * finds the next placeholder, same result as the first regex match
+	 *
+	 * @param labelRange start and end of the label of the match
+	 * @return start of the placeholder, -1 if there is none
+	 */
+	int find(String source, int from, int[] labelRange) {
+		int start = source.indexOf(open, from);
+		while (start != -1) {
+			int labelStart = start + open.length();
+			int labelEnd = labelStart;
+			while (labelEnd < source.length() && isLabelCharacter.get(source.charAt(labelEnd))) {
+				labelEnd++;
+			}
+			if (labelEnd > labelStart) {
+				if (source.startsWith(close, labelEnd)) {
+					labelRange[0] = labelStart;
+					labelRange[1] = labelEnd;
+					return start;
+				}
+				if (closeStartsWithLabelCharacter) {
+					// shorter label, like backtracking
+					for (int end = labelEnd - 1; end > labelStart; end--) {
+						if (source.startsWith(close, end)) {
+							labelRange[0] = labelStart;
+							labelRange[1] = end;
+							return start;
+						}
+					}
+				}
+			}
+			start = source.indexOf(open, start + 1);
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		Delimiters other = (Delimiters) o;
+		return open.equals(other.open) && close.equals(other.close) && labelCharacters.equals(other.labelCharacters);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(open, close, labelCharacters);
+	}
+
+	@Override
+	public String toString() {
+		return placeholder("label");
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * derived data (compiled templates, source outlines) kept between builds
+ *
+ * if de.flapdoodle.testdoc.cacheDirectory is set, entries are stored in this directory,
+ * keyed by a hash of their input, the library version and the version of the code
+ * which computed them, entries written by another format version or damaged entries
+ * are deleted and computed again, entries of other versions are just not read anymore
+ */
+final class DiskCache {
+
+	static final String CACHE_DIRECTORY_PROPERTY = "de.flapdoodle.testdoc.cacheDirectory";
+
+	private static final int MAGIC = 0x7e57d0c5;
+	// change if any codec changes
+	static final int FORMAT_VERSION = 1;
+	// magic, version, payload length ... crc
+	private static final int HEADER_SIZE = 12;
+	private static final int TRAILER_SIZE = 8;
+
+	// from the jar manifest, not set if this library is not used as jar
+	static final String LIBRARY_VERSION = Optional.ofNullable(DiskCache.class.getPackage())
+		.map(Package::getImplementationVersion)
+		.orElse("development");
+
+	private static final Optional<DiskCache> INSTANCE = Configuration.get(CACHE_DIRECTORY_PROPERTY)
+		.map(String::trim)
+		.filter(it -> !it.isEmpty())
+		.map(it -> new DiskCache(Paths.get(it)));
+
+	interface Codec<T> {
+		void write(T value, DataOutput out) throws IOException;
+
+		/**
+		 * @throws IOException if data is not valid
+		 */
+		T read(DataInput in) throws IOException;
+	}
+
+	private final Path directory;
+	private final String libraryVersion;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalid = new AtomicLong();
+
+	DiskCache(Path directory) {
+		this(directory, LIBRARY_VERSION);
+	}
+
+	DiskCache(Path directory, String libraryVersion) {
+		this.directory = Preconditions.checkNotNull(directory, "directory is null");
+		this.libraryVersion = Preconditions.checkNotNull(libraryVersion, "libraryVersion is null");
+	}
+
+	static Optional<DiskCache> instance() {
+		return INSTANCE;
+	}
+
+	Path directory() {
+		return directory;
+	}
+
+	/**
+	 * @param kind name of the sub directory, one per codec
+	 * @param version of the code which computes the value, change if it computes something else
+	 * @param key hash of everything the value is computed from
+	 */
+	<T> T computeIfAbsent(String kind, int version, String key, Codec<T> codec, Supplier<T> compute) {
+		String name = ContentHash.create().add(libraryVersion).add(version).add(key).asHex();
+		Path entry = directory.resolve(kind).resolve(name.substring(0, 2)).resolve(name);
+
+		Optional<T> cached = read(entry, codec);
+		if (cached.isPresent()) {
+			hits.incrementAndGet();
+			return cached.get();
+		}
+
+		misses.incrementAndGet();
+		T ret = compute.get();
+		write(entry, codec, ret);
+		return ret;
+	}
+
+	long hits() {
+		return hits.get();
+	}
+
+	long misses() {
+		return misses.get();
+	}
+
+	long invalid() {
+		return invalid.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DiskCache{" + directory + ", hits=" + hits() + ", misses=" + misses() + ", invalid=" + invalid() + "}";
+	}
+
+	private <T> Optional<T> read(Path entry, Codec<T> codec) {
+		byte[] content;
+		try {
+			content = Files.readAllBytes(entry);
+		}
+		catch (IOException iox) {
+			// missing or not readable
+			return Optional.empty();
+		}
+
+		try {
+			return Optional.of(codec.read(new DataInputStream(new ByteArrayInputStream(content, HEADER_SIZE, payloadLengthOf(content)))));
+		}
+		catch (IOException | RuntimeException ex) {
+			invalid.incrementAndGet();
+			deleteQuietly(entry);
+			return Optional.empty();
+		}
+	}
+
+	private static int payloadLengthOf(byte[] content) throws IOException {
+		if (content.length < HEADER_SIZE + TRAILER_SIZE) {
+			throw new IOException("too short");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+			throw new IOException("unknown format");
+		}
+		int length = buffer.getInt();
+		if (length != content.length - HEADER_SIZE - TRAILER_SIZE) {
+			throw new IOException("wrong length");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(content, HEADER_SIZE, length);
+		if (buffer.getLong(HEADER_SIZE + length) != crc.getValue()) {
+			throw new IOException("wrong checksum");
+		}
+		return length;
+	}
+
+	private <T> void write(Path entry, Codec<T> codec, T value) {
+		Path temp = null;
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(payload)) {
+				codec.write(value, out);
+			}
+			byte[] bytes = payload.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(bytes, 0, bytes.length);
+
+			ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + bytes.length + TRAILER_SIZE)
+				.putInt(MAGIC)
+				.putInt(FORMAT_VERSION)
+				.putInt(bytes.length)
+				.put(bytes)
+				.putLong(crc.getValue());
+
+			Files.createDirectories(entry.getParent());
+			// readers never see a partially written entry
+			temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+			Files.write(temp, content.array());
+			try {
+				Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException amnsx) {
+				Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException iox) {
+			// the cache is an optimization only
+			if (temp != null) {
+				deleteQuietly(temp);
+			}
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		}
+		catch (IOException iox) {
+			// ignore
+		}
+	}
+}
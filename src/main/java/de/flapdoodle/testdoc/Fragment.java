@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * replacement text, written as chunks of existing strings,
+ * so it is not copied before it reaches the output
+ */
+interface Fragment {
+
+	@FunctionalInterface
+	interface Chunks {
+		void write(String source, int start, int end) throws IOException;
+	}
+
+	void writeTo(Chunks chunks) throws IOException;
+
+	default String asString() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeTo(sb::append);
+		}
+		catch (IOException iox) {
+			throw new RuntimeException(iox);
+		}
+		return sb.toString();
+	}
+
+	static Fragment of(String text) {
+		Preconditions.checkNotNull(text, "text is null");
+		return chunks -> chunks.write(text, 0, text.length());
+	}
+
+	static Fragment join(List<? extends Fragment> fragments, String separator) {
+		return chunks -> {
+			for (int i = 0; i < fragments.size(); i++) {
+				if (i > 0) {
+					chunks.write(separator, 0, separator.length());
+				}
+				fragments.get(i).writeTo(chunks);
+			}
+		};
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * minimal java tokenizer, good enough to find braces, declarations and comments,
+ * strings, chars and text blocks are skipped as one token
+ */
+final class JavaLexer {
+
+	enum Kind {
+		IDENTIFIER, NUMBER, STRING, CHAR, PUNCTUATION, LINE_COMMENT, BLOCK_COMMENT;
+
+		boolean isComment() {
+			return this == LINE_COMMENT || this == BLOCK_COMMENT;
+		}
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+
+	private final List<String> lines;
+
+	private int size = 0;
+	private byte[] kind = new byte[256];
+	// line index, column
+	private int[] startLine = new int[256];
+	private int[] startColumn = new int[256];
+	private int[] endLine = new int[256];
+	// exclusive
+	private int[] endColumn = new int[256];
+
+	private JavaLexer(List<String> lines) {
+		this.lines = lines;
+	}
+
+	static JavaLexer tokenize(List<String> lines) {
+		JavaLexer ret = new JavaLexer(lines);
+		ret.run();
+		return ret;
+	}
+
+	int size() {
+		return size;
+	}
+
+	Kind kind(int index) {
+		return KINDS[kind[index]];
+	}
+
+	/**
+	 * @return first line of token, starting with 1
+	 */
+	int lineNumber(int index) {
+		return startLine[index] + 1;
+	}
+
+	/**
+	 * @return last line of token, starting with 1
+	 */
+	int endLineNumber(int index) {
+		return endLine[index] + 1;
+	}
+
+	int column(int index) {
+		return startColumn[index];
+	}
+
+	boolean is(int index, char punctuation) {
+		return kind[index] == Kind.PUNCTUATION.ordinal()
+			&& lines.get(startLine[index]).charAt(startColumn[index]) == punctuation;
+	}
+
+	boolean isIdentifier(int index, String identifier) {
+		return kind[index] == Kind.IDENTIFIER.ordinal()
+			&& endColumn[index] - startColumn[index] == identifier.length()
+			&& lines.get(startLine[index]).startsWith(identifier, startColumn[index]);
+	}
+
+	String text(int index) {
+		if (startLine[index] == endLine[index]) {
+			return lines.get(startLine[index]).substring(startColumn[index], endColumn[index]);
+		}
+		StringBuilder sb = new StringBuilder(lines.get(startLine[index]).substring(startColumn[index]));
+		for (int i = startLine[index] + 1; i < endLine[index]; i++) {
+			sb.append('\n').append(lines.get(i));
+		}
+		return sb.append('\n').append(lines.get(endLine[index]), 0, endColumn[index]).toString();
+	}
+
+	/**
+	 * @return next token which is not a comment, or -1
+	 */
+	int nextSignificant(int index) {
+		int ret = index + 1;
+		while (ret < size && kind(ret).isComment()) {
+			ret++;
+		}
+		return ret < size ? ret : -1;
+	}
+
+	/**
+	 * @return previous token which is not a comment, or -1
+	 */
+	int previousSignificant(int index) {
+		int ret = index - 1;
+		while (ret >= 0 && kind(ret).isComment()) {
+			ret--;
+		}
+		return ret;
+	}
+
+	private void run() {
+		int line = 0;
+		int column = 0;
+		while (line < lines.size()) {
+			String current = lines.get(line);
+			if (column >= current.length()) {
+				line++;
+				column = 0;
+				continue;
+			}
+			char c = current.charAt(column);
+			if (Character.isWhitespace(c)) {
+				column++;
+			} else if (c == '/' && charAt(current, column + 1) == '/') {
+				add(Kind.LINE_COMMENT, line, column, line, current.length());
+				column = current.length();
+			} else if (c == '/' && charAt(current, column + 1) == '*') {
+				int[] end = find(line, column + 2, "*/");
+				add(Kind.BLOCK_COMMENT, line, column, end[0], end[1]);
+				line = end[0];
+				column = end[1];
+			} else if (c == '"' && current.startsWith("\"\"\"", column)) {
+				int[] end = find(line, column + 3, "\"\"\"");
+				add(Kind.STRING, line, column, end[0], end[1]);
+				line = end[0];
+				column = end[1];
+			} else if (c == '"' || c == '\'') {
+				int end = endOfLiteral(current, column + 1, c);
+				add(c == '"' ? Kind.STRING : Kind.CHAR, line, column, line, end);
+				column = end;
+			} else if (Character.isJavaIdentifierStart(c)) {
+				int end = column + 1;
+				while (end < current.length() && Character.isJavaIdentifierPart(current.charAt(end))) {
+					end++;
+				}
+				add(Kind.IDENTIFIER, line, column, line, end);
+				column = end;
+			} else if (Character.isDigit(c)) {
+				int end = column + 1;
+				while (end < current.length() && (Character.isLetterOrDigit(current.charAt(end)) || current.charAt(end) == '_' || current.charAt(end) == '.')) {
+					end++;
+				}
+				add(Kind.NUMBER, line, column, line, end);
+				column = end;
+			} else {
+				add(Kind.PUNCTUATION, line, column, line, column + 1);
+				column++;
+			}
+		}
+	}
+
+	private static char charAt(String line, int column) {
+		return column < line.length() ? line.charAt(column) : 0;
+	}
+
+	private static int endOfLiteral(String line, int column, char quote) {
+		int i = column;
+		while (i < line.length()) {
+			char c = line.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (c == quote) {
+				return i + 1;
+			} else {
+				i++;
+			}
+		}
+		return line.length();
+	}
+
+	/**
+	 * @return line and column after the end marker, or end of source
+	 */
+	private int[] find(int line, int column, String endMarker) {
+		int currentLine = line;
+		int from = column;
+		while (currentLine < lines.size()) {
+			String current = lines.get(currentLine);
+			int found = indexOfUnescaped(current, endMarker, from);
+			if (found != -1) {
+				return new int[] { currentLine, found + endMarker.length() };
+			}
+			currentLine++;
+			from = 0;
+		}
+		int last = lines.size() - 1;
+		return new int[] { last, lines.get(last).length() };
+	}
+
+	private static int indexOfUnescaped(String line, String marker, int from) {
+		int found = line.indexOf(marker, from);
+		while (found > 0 && line.charAt(found - 1) == '\\' && marker.charAt(0) == '"') {
+			found = line.indexOf(marker, found + 1);
+		}
+		return found;
+	}
+
+	private void add(Kind tokenKind, int line, int column, int lastLine, int lastColumn) {
+		if (size == kind.length) {
+			int capacity = size * 2;
+			kind = Arrays.copyOf(kind, capacity);
+			startLine = Arrays.copyOf(startLine, capacity);
+			startColumn = Arrays.copyOf(startColumn, capacity);
+			endLine = Arrays.copyOf(endLine, capacity);
+			endColumn = Arrays.copyOf(endColumn, capacity);
+		}
+		kind[size] = (byte) tokenKind.ordinal();
+		startLine[size] = line;
+		startColumn[size] = column;
+		endLine[size] = lastLine;
+		endColumn[size] = lastColumn;
+		size++;
+	}
+}
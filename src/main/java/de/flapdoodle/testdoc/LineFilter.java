@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+/**
+ * a {@link ResourceFilter} which looks at one line at a time, so that a chain
+ * of them can be fused into one pass over the resource
+ */
+@FunctionalInterface
+public interface LineFilter extends ResourceFilter {
+
+	/**
+	 * @param next where the filtered lines go
+	 * @return where the lines to filter go
+	 */
+	Lines to(Lines next);
+
+	@Override
+	default String apply(String src) {
+		StringBuilder sb = new StringBuilder(src.length());
+		LinePipeline.split(src, to(LinePipeline.appendTo(sb)));
+		return sb.toString();
+	}
+
+	interface Lines {
+		/**
+		 * @param line without separator, only valid during this call
+		 * @param separator the separator after this line, empty for the last one
+		 * @return false if no more lines are needed
+		 */
+		boolean line(CharSequence line, String separator);
+
+		/**
+		 * called after the last line
+		 */
+		default void end() {
+		}
+	}
+}
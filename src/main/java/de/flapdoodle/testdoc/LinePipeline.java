@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.flapdoodle.testdoc.LineFilter.Lines;
+
+/**
+ * line sources, sinks and stages for {@link LineFilter}
+ */
+final class LinePipeline {
+
+	private LinePipeline() {
+		// no instance
+	}
+
+	/**
+	 * consecutive line filters are fused into one, so the lines pass all of them in one go
+	 */
+	static ResourceFilter join(ResourceFilter... filters) {
+		List<ResourceFilter> stages = new ArrayList<>();
+		List<LineFilter> lineFilters = new ArrayList<>();
+		for (ResourceFilter filter : filters) {
+			if (filter instanceof LineFilter) {
+				lineFilters.add((LineFilter) filter);
+			} else {
+				if (!lineFilters.isEmpty()) {
+					stages.add(fuse(lineFilters));
+					lineFilters = new ArrayList<>();
+				}
+				stages.add(filter);
+			}
+		}
+		if (!lineFilters.isEmpty()) {
+			stages.add(fuse(lineFilters));
+		}
+		if (stages.size() == 1) {
+			return stages.get(0);
+		}
+		return src -> {
+			String ret = src;
+			for (ResourceFilter stage : stages) {
+				ret = stage.apply(ret);
+			}
+			return ret;
+		};
+	}
+
+	static LineFilter fuse(List<LineFilter> filters) {
+		if (filters.size() == 1) {
+			return filters.get(0);
+		}
+		LineFilter[] copy = filters.toArray(new LineFilter[0]);
+		return next -> {
+			Lines ret = next;
+			for (int i = copy.length - 1; i >= 0; i--) {
+				ret = copy[i].to(ret);
+			}
+			return ret;
+		};
+	}
+
+	/**
+	 * splits at \n, \n\r and \r\n, keeping each separator
+	 */
+	static void split(CharSequence src, Lines lines) {
+		int length = src.length();
+		int start = 0;
+		boolean more = true;
+		for (int i = 0; more && i < length; i++) {
+			if (src.charAt(i) == '\n') {
+				int end = i;
+				String separator = "\n";
+				if (i + 1 < length && src.charAt(i + 1) == '\r') {
+					separator = "\n\r";
+					i++;
+				} else if (end > start && src.charAt(end - 1) == '\r') {
+					separator = "\r\n";
+					end--;
+				}
+				more = lines.line(CharBuffer.wrap(src, start, end), separator);
+				start = i + 1;
+			}
+		}
+		if (more && start < length) {
+			lines.line(CharBuffer.wrap(src, start, length), "");
+		}
+		lines.end();
+	}
+
+	/**
+	 * reads lines like {@link BufferedReader#readLine()} and joins them with \n,
+	 * stops reading as soon as no more lines are needed
+	 */
+	static void read(BufferedReader reader, Lines lines) {
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				String next = reader.readLine();
+				if (!lines.line(line, next != null ? "\n" : "")) {
+					break;
+				}
+				line = next;
+			}
+			lines.end();
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static Lines appendTo(StringBuilder sb) {
+		return (line, separator) -> {
+			sb.append(line).append(separator);
+			return true;
+		};
+	}
+
+	static abstract class Stage implements Lines {
+		protected final Lines next;
+
+		protected Stage(Lines next) {
+			this.next = next;
+		}
+
+		@Override
+		public void end() {
+			next.end();
+		}
+	}
+
+	static final class Indent extends Stage {
+		private final String prefix;
+		private final StringBuilder buffer = new StringBuilder();
+
+		Indent(Lines next, String prefix) {
+			super(next);
+			this.prefix = prefix;
+		}
+
+		@Override
+		public boolean line(CharSequence line, String separator) {
+			buffer.setLength(0);
+			buffer.append(prefix).append(line);
+			return next.line(buffer, separator);
+		}
+	}
+
+	/**
+	 * removes up to a number of leading whitespace characters from each line
+	 */
+	static final class Dedent extends Stage {
+		private final int columns;
+
+		Dedent(Lines next, int columns) {
+			super(next);
+			this.columns = columns;
+		}
+
+		@Override
+		public boolean line(CharSequence line, String separator) {
+			int skip = Math.min(leadingWhitespace(line), columns);
+			return next.line(skip > 0 ? line.subSequence(skip, line.length()) : line, separator);
+		}
+	}
+
+	/**
+	 * removes the indentation all non blank lines have in common, must see all lines before it
+	 * can pass the first one
+	 */
+	static final class CommonDedent extends Stage {
+		private final List<String> lines = new ArrayList<>();
+		private final List<String> separators = new ArrayList<>();
+		private int columns = Integer.MAX_VALUE;
+
+		CommonDedent(Lines next) {
+			super(next);
+		}
+
+		@Override
+		public boolean line(CharSequence line, String separator) {
+			int indent = leadingWhitespace(line);
+			if (indent < line.length()) {
+				columns = Math.min(columns, indent);
+			}
+			lines.add(line.toString());
+			separators.add(separator);
+			return true;
+		}
+
+		@Override
+		public void end() {
+			for (int i = 0; i < lines.size(); i++) {
+				String line = lines.get(i);
+				if (!next.line(line.substring(Math.min(columns, line.length())), separators.get(i))) {
+					break;
+				}
+			}
+			next.end();
+		}
+	}
+
+	/**
+	 * passes the lines from one line number to another (both starting with 1, both included),
+	 * the last line is passed without separator
+	 */
+	static final class LineRange extends Stage {
+		private final int from;
+		private final int to;
+		private int lineNumber = 0;
+
+		LineRange(Lines next, int from, int to) {
+			super(next);
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean line(CharSequence line, String separator) {
+			lineNumber++;
+			if (lineNumber < from) {
+				return true;
+			}
+			if (lineNumber < to) {
+				return next.line(line, separator);
+			}
+			next.line(line, "");
+			return false;
+		}
+	}
+
+	/**
+	 * keeps the last lines until all are read, the last line is passed without separator
+	 */
+	static final class Tail extends Stage {
+		private final String[] lines;
+		private int count = 0;
+
+		Tail(Lines next, int lines) {
+			super(next);
+			this.lines = new String[lines];
+		}
+
+		@Override
+		public boolean line(CharSequence line, String separator) {
+			lines[count % lines.length] = line.toString();
+			count++;
+			return true;
+		}
+
+		@Override
+		public void end() {
+			int size = Math.min(count, lines.length);
+			for (int i = 0; i < size; i++) {
+				String line = lines[(count - size + i) % lines.length];
+				if (!next.line(line, i + 1 < size ? "\n" : "")) {
+					break;
+				}
+			}
+			next.end();
+		}
+	}
+
+	static final class Replace extends Stage {
+		private final String literal;
+		private final String replacement;
+		private final StringBuilder buffer = new StringBuilder();
+
+		Replace(Lines next, String literal, String replacement) {
+			super(next);
+			this.literal = literal;
+			this.replacement = replacement;
+		}
+
+		@Override
+		public boolean line(CharSequence line, String separator) {
+			String text = line.toString();
+			int index = text.indexOf(literal);
+			if (index < 0) {
+				return next.line(text, separator);
+			}
+			buffer.setLength(0);
+			int start = 0;
+			while (index >= 0) {
+				buffer.append(text, start, index).append(replacement);
+				start = index + literal.length();
+				index = text.indexOf(literal, start);
+			}
+			buffer.append(text, start, text.length());
+			return next.line(buffer, separator);
+		}
+	}
+
+	private static int leadingWhitespace(CharSequence line) {
+		int i = 0;
+		while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * results of lookups, something which could not be found is looked up
+ * again after a while, because it may have been created in the meantime
+ */
+final class LookupCache<K, V> {
+
+	static final Duration DEFAULT_RETRY_MISSES_AFTER = Duration.ofSeconds(2);
+
+	private final long retryMissesAfterNanos;
+	private final LongSupplier nanoTime;
+	private final ConcurrentMap<K, Result<V>> results = new ConcurrentHashMap<>();
+
+	LookupCache() {
+		this(DEFAULT_RETRY_MISSES_AFTER, System::nanoTime);
+	}
+
+	LookupCache(Duration retryMissesAfter, LongSupplier nanoTime) {
+		Preconditions.checkArgument(!retryMissesAfter.isNegative(), "invalid retryMissesAfter: %s", retryMissesAfter);
+		this.retryMissesAfterNanos = retryMissesAfter.toNanos();
+		this.nanoTime = nanoTime;
+	}
+
+	/**
+	 * @return cached result or result of lookup, if there is none or if the cached miss is too old
+	 */
+	Optional<V> get(K key, Function<? super K, Optional<V>> lookup) {
+		long now = nanoTime.getAsLong();
+		Result<V> result = results.get(key);
+		if (result != null && (result.value.isPresent() || now - result.lookedUpAt < retryMissesAfterNanos)) {
+			return result.value;
+		}
+		Optional<V> value = lookup.apply(key);
+		results.put(key, new Result<>(value, now));
+		return value;
+	}
+
+	void clear() {
+		results.clear();
+	}
+
+	private static final class Result<V> {
+		private final Optional<V> value;
+		private final long lookedUpAt;
+
+		private Result(Optional<V> value, long lookedUpAt) {
+			this.value = value;
+			this.lookedUpAt = lookedUpAt;
+		}
+	}
+}
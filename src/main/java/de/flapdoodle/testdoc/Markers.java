@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.*;
+
+/**
+ * begin/end markers of one method, packed into primitive arrays
+ * with interned class/file names and labels, read only outside of
+ * this package, see {@link #asLines()} for a view as {@link Start}/{@link End}
+ */
+public final class Markers {
+
+	private static final int NO_LABEL = -1;
+	private static final int KIND_START = 0;
+	private static final int KIND_END = 1;
+	// one bit is used for the kind
+	private static final int MAX_LINE_NUMBER = Integer.MAX_VALUE >>> 1;
+
+	private final String methodName;
+	private final Symbols symbols;
+
+	private int size = 0;
+	// lineNumber << 1 | kind
+	private int[] lineAndKind;
+	private int[] className;
+	private int[] fileName;
+	private int[] label;
+
+	Markers(String methodName) {
+		this(methodName, new Symbols(), 8);
+	}
+
+	private Markers(String methodName, Symbols symbols, int capacity) {
+		this.methodName = methodName;
+		this.symbols = symbols;
+		this.lineAndKind = new int[capacity];
+		this.className = new int[capacity];
+		this.fileName = new int[capacity];
+		this.label = new int[capacity];
+	}
+
+	public String methodName() {
+		return methodName;
+	}
+
+	/**
+	 * @return number of markers, each index from 0 to size-1 is one marker
+	 */
+	public int size() {
+		return size;
+	}
+
+	void start(Line line, Optional<String> label) {
+		add(line, KIND_START, label.map(symbols::intern).orElse(NO_LABEL));
+	}
+
+	void end(Line line) {
+		add(line, KIND_END, NO_LABEL);
+	}
+
+	void add(HasLine marker) {
+		if (marker instanceof Start) {
+			start(marker.line(), ((Start) marker).label());
+		} else {
+			Preconditions.checkArgument(marker instanceof End, "hmm... should not happen: %s", marker);
+			end(marker.line());
+		}
+	}
+
+	void addAll(Markers other) {
+		for (int i = 0; i < other.size; i++) {
+			int labelIndex = other.label[i];
+			add(other.lineNumber(i), other.lineAndKind[i] & 1,
+				symbols.intern(other.symbols.get(other.className[i])),
+				symbols.intern(other.symbols.get(other.fileName[i])),
+				labelIndex == NO_LABEL ? NO_LABEL : symbols.intern(other.symbols.get(labelIndex)));
+		}
+	}
+
+	private void add(Line line, int kind, int labelIndex) {
+		Preconditions.checkArgument(line.methodName().equals(methodName), "%s is not part of %s", line, methodName);
+		add(line.lineNumber(), kind, symbols.intern(line.className()), symbols.intern(line.fileName()), labelIndex);
+	}
+
+	private void add(int lineNumber, int kind, int classNameIndex, int fileNameIndex, int labelIndex) {
+		Preconditions.checkArgument(lineNumber > 0 && lineNumber <= MAX_LINE_NUMBER, "invalid line number %s in %s, is debug information missing?", lineNumber, methodName);
+		if (size == lineAndKind.length) {
+			int capacity = size * 2;
+			lineAndKind = Arrays.copyOf(lineAndKind, capacity);
+			className = Arrays.copyOf(className, capacity);
+			fileName = Arrays.copyOf(fileName, capacity);
+			label = Arrays.copyOf(label, capacity);
+		}
+		lineAndKind[size] = lineNumber << 1 | kind;
+		className[size] = classNameIndex;
+		fileName[size] = fileNameIndex;
+		label[size] = labelIndex;
+		size++;
+	}
+
+	public boolean isStart(int index) {
+		return (lineAndKind[index] & 1) == KIND_START;
+	}
+
+	public int lineNumber(int index) {
+		return lineAndKind[index] >>> 1;
+	}
+
+	public Optional<String> label(int index) {
+		return label[index] == NO_LABEL ? Optional.empty() : Optional.of(symbols.get(label[index]));
+	}
+
+	public Set<String> fileNames() {
+		Set<String> ret = new LinkedHashSet<>();
+		for (int i = 0; i < size; i++) {
+			ret.add(symbols.get(fileName[i]));
+		}
+		return ret;
+	}
+
+	/**
+	 * @return marker indices sorted by line number
+	 */
+	int[] inLineOrder() {
+		long[] lineAndIndex = new long[size];
+		for (int i = 0; i < size; i++) {
+			lineAndIndex[i] = ((long) lineNumber(i) << 32) | i;
+		}
+		Arrays.sort(lineAndIndex);
+		int[] ret = new int[size];
+		for (int i = 0; i < size; i++) {
+			ret[i] = (int) lineAndIndex[i];
+		}
+		return ret;
+	}
+
+	Markers copy() {
+		Markers ret = new Markers(methodName, symbols.copy(), Math.max(size, 1));
+		System.arraycopy(lineAndKind, 0, ret.lineAndKind, 0, size);
+		System.arraycopy(className, 0, ret.className, 0, size);
+		System.arraycopy(fileName, 0, ret.fileName, 0, size);
+		System.arraycopy(label, 0, ret.label, 0, size);
+		ret.size = size;
+		return ret;
+	}
+
+	public HasLine asLine(int index) {
+		Line line = Line.builder()
+			.className(symbols.get(className[index]))
+			.fileName(symbols.get(fileName[index]))
+			.methodName(methodName)
+			.lineNumber(lineNumber(index))
+			.build();
+		return isStart(index)
+			? Start.of(line).withLabel(label(index))
+			: End.of(line);
+	}
+
+	public List<HasLine> asLines() {
+		List<HasLine> ret = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			ret.add(asLine(i));
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return "Markers(" + methodName + ")" + asLines();
+	}
+
+	/**
+	 * @return markers of each method, in order of the first marker of each method
+	 */
+	public static Map<String, Markers> byMethod(Collection<? extends HasLine> lines) {
+		Map<String, Markers> ret = new LinkedHashMap<>();
+		for (HasLine line : lines) {
+			ret.computeIfAbsent(line.line().methodName(), Markers::new).add(line);
+		}
+		return ret;
+	}
+
+	private static final class Symbols {
+		private final List<String> values;
+		private final Map<String, Integer> index;
+
+		Symbols() {
+			this(new ArrayList<>(), new HashMap<>());
+		}
+
+		private Symbols(List<String> values, Map<String, Integer> index) {
+			this.values = values;
+			this.index = index;
+		}
+
+		int intern(String value) {
+			Integer ret = index.get(value);
+			if (ret == null) {
+				ret = values.size();
+				values.add(value);
+				index.put(value, ret);
+			}
+			return ret;
+		}
+
+		String get(int id) {
+			return values.get(id);
+		}
+
+		Symbols copy() {
+			return new Symbols(new ArrayList<>(values), new HashMap<>(index));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.*;
+
+/**
+ * everything recorded from one method, so concurrent test methods
+ * do not share any mutable state
+ */
+final class MethodRecording {
+
+	static final Comparator<MethodRecording> IN_SOURCE_ORDER = Comparator
+		.comparingInt(MethodRecording::firstLineNumber)
+		.thenComparing(it -> it.methodName);
+
+	private final String methodName;
+	private int firstLineNumber = Integer.MAX_VALUE;
+	private final Markers markers;
+	private final Map<String, CalledMethod> calledMethod = new LinkedHashMap<>();
+	private final Map<String, String> classes = new LinkedHashMap<>();
+	private final Map<String, String> resources = new LinkedHashMap<>();
+	private final Map<String, String> output = new LinkedHashMap<>();
+	private final Map<String, OutputFiles.Content> files = new LinkedHashMap<>();
+
+	MethodRecording(String methodName) {
+		this.methodName = methodName;
+		this.markers = new Markers(methodName);
+	}
+
+	synchronized int firstLineNumber() {
+		return firstLineNumber;
+	}
+
+	synchronized void start(Line line, Optional<String> label) {
+		seen(line);
+		markers.start(line, label);
+	}
+
+	synchronized void end(Line line) {
+		seen(line);
+		markers.end(line);
+	}
+
+	synchronized void calledMethod(String label, CalledMethod method) {
+		seen(method.line());
+		CalledMethod old = calledMethod.put(label, method);
+		Preconditions.checkArgument(old == null, "method with label %s was already set to %s", label, old);
+	}
+
+	synchronized void sourceCode(Optional<Line> caller, String label, String sourceCode) {
+		caller.ifPresent(this::seen);
+		String old = classes.put(label, sourceCode);
+		Preconditions.checkArgument(old == null, "sourceCodeOf with label %s was already set to %s", label, old);
+	}
+
+	synchronized void resource(Optional<Line> caller, String label, String resource) {
+		caller.ifPresent(this::seen);
+		String old = resources.put(label, resource);
+		Preconditions.checkArgument(old == null, "resource with label %s was already set to %s", label, old);
+	}
+
+	synchronized void output(Line caller, String label, String content) {
+		seen(caller);
+		String old = output.put(methodName + "." + label, content);
+		Preconditions.checkArgument(old == null, "%s already set to %s", label, old);
+	}
+
+	synchronized void file(Line caller, String label, String fileName, OutputFiles.Content content) {
+		output(caller, label, fileName);
+		OutputFiles.Content oldContent = files.put(fileName, content);
+		Preconditions.checkArgument(oldContent == null, "%s/%s already set", label, fileName);
+	}
+
+	synchronized void copyTo(
+		List<Markers> markers,
+		Map<String, CalledMethod> calledMethod,
+		Map<String, String> classes,
+		Map<String, String> resources,
+		Map<String, String> output,
+		Map<String, OutputFiles.Content> files
+	) {
+		if (this.markers.size() > 0) {
+			markers.add(this.markers.copy());
+		}
+		putAllUnique(calledMethod, this.calledMethod, "method with label %s was already set to %s");
+		putAllUnique(classes, this.classes, "sourceCodeOf with label %s was already set to %s");
+		putAllUnique(resources, this.resources, "resource with label %s was already set to %s");
+		putAllUnique(output, this.output, "%s already set to %s");
+		putAllUnique(files, this.files, "file %s already set");
+	}
+
+	private void seen(Line line) {
+		firstLineNumber = Math.min(firstLineNumber, line.lineNumber());
+	}
+
+	private static <T> void putAllUnique(Map<String, T> dest, Map<String, T> src, String errorMessage) {
+		src.forEach((key, value) -> {
+			T old = dest.put(key, value);
+			Preconditions.checkArgument(old == null, errorMessage, key, old);
+		});
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * replacements for template labels nothing was recorded for,
+ * called once per rendered document with all of them
+ */
+@FunctionalInterface
+public interface MissingReplacements {
+
+	/**
+	 * @param missingLabels labels used in the template, but not recorded
+	 * @param recordedLabels all recorded labels
+	 * @return replacement for every missing label
+	 */
+	Map<String, String> replacementsFor(Set<String> missingLabels, Set<String> recordedLabels);
+
+	/**
+	 * @param fallback called once for each missing label
+	 */
+	static MissingReplacements eachOf(BiFunction<String, Set<String>, String> fallback) {
+		Preconditions.checkNotNull(fallback, "fallback is null");
+		return (missingLabels, recordedLabels) -> {
+			Map<String, String> ret = new LinkedHashMap<>();
+			for (String label : missingLabels) {
+				ret.put(label, fallback.apply(label, recordedLabels));
+			}
+			return ret;
+		};
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * writes rendered documents and files, if de.flapdoodle.testdoc.skipUnchanged is set
+ * files with the same content are not touched
+ */
+final class OutputFiles {
+
+	static final String SKIP_UNCHANGED_PROPERTY = "de.flapdoodle.testdoc.skipUnchanged";
+
+	private static final int COMPARE_BUFFER_SIZE = 8192;
+
+	private final boolean skipUnchanged;
+	private int written = 0;
+	private int skipped = 0;
+
+	OutputFiles(boolean skipUnchanged) {
+		this.skipUnchanged = skipUnchanged;
+	}
+
+	static OutputFiles fromConfiguration() {
+		return new OutputFiles(Configuration.getBoolean(SKIP_UNCHANGED_PROPERTY));
+	}
+
+	boolean skipUnchanged() {
+		return skipUnchanged;
+	}
+
+	int written() {
+		return written;
+	}
+
+	int skipped() {
+		return skipped;
+	}
+
+	void write(Path path, Content content) throws IOException {
+		if (skipUnchanged && isUnchanged(path, content)) {
+			skipped++;
+			return;
+		}
+		// content is written to a temp file first, so a failure while rendering
+		// or copying does not leave a truncated file behind
+		Path temp = path.resolveSibling("." + path.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+				content.writeTo(channel);
+			}
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException amnsx) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+		written++;
+	}
+
+	@Override
+	public String toString() {
+		return "written: " + written + ", unchanged: " + skipped;
+	}
+
+	private static boolean isUnchanged(Path path, Content content) throws IOException {
+		if (!Files.isRegularFile(path)) {
+			return false;
+		}
+		OptionalLong size = content.size();
+		if (size.isPresent() && size.getAsLong() != Files.size(path)) {
+			return false;
+		}
+		try (FileChannel existing = FileChannel.open(path, StandardOpenOption.READ)) {
+			CompareChannel compare = new CompareChannel(existing);
+			content.writeTo(compare);
+			return !compare.differs() && compare.atEndOfExisting();
+		}
+	}
+
+	static Content content(byte[] content) {
+		return new Content() {
+			@Override
+			public OptionalLong size() {
+				return OptionalLong.of(content.length);
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(content);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		};
+	}
+
+	/**
+	 * the file is transferred when written, it must exist until then
+	 */
+	static Content content(Path file) {
+		return content(file, file.toString());
+	}
+
+	/**
+	 * @param recordedAs used in the error message if the file is gone when written
+	 */
+	static Content content(Path file, String recordedAs) {
+		return new Content() {
+			@Override
+			public OptionalLong size() {
+				try {
+					return OptionalLong.of(Files.size(file));
+				}
+				catch (IOException iox) {
+					return OptionalLong.empty();
+				}
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel) throws IOException {
+				if (!Files.isRegularFile(file)) {
+					throw new NoSuchFileException(file.toString(), null, recordedAs
+						+ " was deleted before the document was written, files are copied after all tests of a class");
+				}
+				try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+					long size = source.size();
+					long position = 0;
+					while (position < size) {
+						long transferred = source.transferTo(position, size - position, channel);
+						if (transferred <= 0) {
+							break;
+						}
+						position += transferred;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * the stream is opened each time the content is written or compared
+	 */
+	static Content content(ThrowingSupplier<? extends InputStream, ?> input) {
+		return new Content() {
+			@Override
+			public OptionalLong size() {
+				return OptionalLong.empty();
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel) throws IOException {
+				try (ReadableByteChannel source = Channels.newChannel(open(input))) {
+					ByteBuffer buffer = ByteBuffer.allocate(COMPARE_BUFFER_SIZE);
+					while (source.read(buffer) >= 0) {
+						buffer.flip();
+						while (buffer.hasRemaining()) {
+							channel.write(buffer);
+						}
+						buffer.clear();
+					}
+				}
+			}
+		};
+	}
+
+	private static InputStream open(ThrowingSupplier<? extends InputStream, ?> input) throws IOException {
+		try {
+			return input.get();
+		}
+		catch (RuntimeException rx) {
+			throw rx;
+		}
+		catch (Exception ex) {
+			throw ex instanceof IOException ? (IOException) ex : new IOException(ex);
+		}
+	}
+
+	static byte[] bytesOf(Content content) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			content.writeTo(Channels.newChannel(out));
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not read content", iox);
+		}
+		return out.toByteArray();
+	}
+
+	static Content content(Rendering rendering) {
+		return new Content() {
+			@Override
+			public OptionalLong size() {
+				return OptionalLong.empty();
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel) throws IOException {
+				rendering.writeTo(channel, StandardCharsets.UTF_8);
+			}
+		};
+	}
+
+	interface Content {
+		OptionalLong size();
+
+		void writeTo(WritableByteChannel channel) throws IOException;
+	}
+
+	/**
+	 * compares everything written with the existing file, after the first
+	 * difference the rest is only skipped
+	 */
+	private static final class CompareChannel implements WritableByteChannel {
+		private final FileChannel existing;
+		private final ByteBuffer buffer = ByteBuffer.allocate(COMPARE_BUFFER_SIZE);
+		private boolean differs = false;
+
+		CompareChannel(FileChannel existing) {
+			this.existing = existing;
+			buffer.limit(0);
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int count = src.remaining();
+			while (!differs && src.hasRemaining()) {
+				if (!buffer.hasRemaining() && !fill()) {
+					differs = true;
+				} else if (src.get() != buffer.get()) {
+					differs = true;
+				}
+			}
+			src.position(src.limit());
+			return count;
+		}
+
+		boolean differs() {
+			return differs;
+		}
+
+		boolean atEndOfExisting() throws IOException {
+			return !buffer.hasRemaining() && !fill();
+		}
+
+		private boolean fill() throws IOException {
+			buffer.clear();
+			int read;
+			do {
+				read = existing.read(buffer);
+			}
+			while (read == 0);
+			buffer.flip();
+			return read > 0;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
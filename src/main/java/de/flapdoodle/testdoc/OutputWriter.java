@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * writes rendered documents into the destination directory
+ *
+ * if de.flapdoodle.testdoc.asyncWrite is set, documents are written in the background
+ * (de.flapdoodle.testdoc.asyncWrite.threads threads) while a launcher session is open
+ * and the session waits for them when it is closed (see TestdocLauncherSessionListener),
+ * without a registered listener documents are written right away
+ */
+final class OutputWriter {
+
+	static final String ASYNC_WRITE_PROPERTY = "de.flapdoodle.testdoc.asyncWrite";
+	static final String ASYNC_WRITE_THREADS_PROPERTY = "de.flapdoodle.testdoc.asyncWrite.threads";
+
+	private static final OutputWriter INSTANCE = new OutputWriter(
+		Configuration.getBoolean(ASYNC_WRITE_PROPERTY),
+		Configuration.getLong(ASYNC_WRITE_THREADS_PROPERTY)
+			.map(Long::intValue)
+			.orElse(Math.min(4, Runtime.getRuntime().availableProcessors()))
+	);
+
+	private final boolean async;
+	private final int threads;
+	private final Set<Path> existingDirectories = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger openSessions = new AtomicInteger();
+	private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+	private ExecutorService executor;
+
+	OutputWriter(boolean async, int threads) {
+		Preconditions.checkArgument(threads > 0, "invalid number of threads: %s", threads);
+		this.async = async;
+		this.threads = threads;
+	}
+
+	static OutputWriter instance() {
+		return INSTANCE;
+	}
+
+	void sessionOpened() {
+		openSessions.incrementAndGet();
+	}
+
+	void sessionClosed() {
+		openSessions.decrementAndGet();
+		awaitPending();
+	}
+
+	void write(Path destination, String templateName, Rendering rendering, Map<String, OutputFiles.Content> files) {
+		write(destination, templateName, rendering, files, Optional.empty(), Optional.empty());
+	}
+
+	/**
+	 * @param testClass which recorded the document, reported if it could not be written
+	 * @param fingerprint of the render inputs, stored after document and files are written
+	 */
+	void write(Path destination, String templateName, Rendering rendering, Map<String, OutputFiles.Content> files, Optional<Class<?>> testClass, Optional<String> fingerprint) {
+		if (async && openSessions.get() > 0) {
+			pending.add(new Pending(documentOf(templateName, testClass), executor().submit(() -> {
+				writeNow(destination, templateName, rendering, files, fingerprint);
+				return null;
+			})));
+		} else {
+			writeNow(destination, templateName, rendering, files, fingerprint);
+		}
+	}
+
+	static String documentOf(String templateName, Optional<Class<?>> testClass) {
+		return testClass.isPresent()
+			? templateName + " (" + testClass.get().getName() + ")"
+			: templateName;
+	}
+
+	/**
+	 * waits for all documents written in the background
+	 * @throws RuntimeException if any of them could not be written
+	 */
+	void awaitPending() {
+		List<RuntimeException> failed = new ArrayList<>();
+		Pending next;
+		while ((next = pending.poll()) != null) {
+			try {
+				next.future.get();
+			}
+			catch (ExecutionException ex) {
+				failed.add(new RuntimeException("could not write " + next.document, ex.getCause()));
+			}
+			catch (InterruptedException ix) {
+				Thread.currentThread().interrupt();
+				failed.add(new RuntimeException("interrupted while writing " + next.document, ix));
+			}
+		}
+		throwIfAnyFailed(failed);
+	}
+
+	/**
+	 * each failure is reported with its own document and cause
+	 */
+	static void throwIfAnyFailed(List<RuntimeException> failed) {
+		if (failed.size() == 1) {
+			throw failed.get(0);
+		}
+		if (!failed.isEmpty()) {
+			RuntimeException ret = new RuntimeException(failed.stream()
+				.map(Throwable::getMessage)
+				.collect(Collectors.joining("\n", failed.size() + " documents failed:\n", "")));
+			failed.forEach(ret::addSuppressed);
+			throw ret;
+		}
+	}
+
+	private void writeNow(Path destination, String templateName, Rendering rendering, Map<String, OutputFiles.Content> files, Optional<String> fingerprint) {
+		Path output = destination.resolve(templateName);
+		OutputFiles outputFiles = OutputFiles.fromConfiguration();
+		try {
+			createParentDirectoryIfNeeded(output);
+			outputFiles.write(output, OutputFiles.content(rendering));
+
+			for (Map.Entry<String, OutputFiles.Content> entry : files.entrySet()) {
+				Path filePath = createParentDirectoryIfNeeded(destination.resolve(entry.getKey()));
+				outputFiles.write(filePath, entry.getValue());
+			}
+			if (fingerprint.isPresent()) {
+				RenderFingerprint.store(destination, templateName, fingerprint.get());
+			}
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not write " + output, iox);
+		}
+		if (outputFiles.skipUnchanged()) {
+			System.out.println(templateName + " - " + outputFiles);
+		}
+	}
+
+	private Path createParentDirectoryIfNeeded(Path filePath) throws IOException {
+		Path parent = filePath.getParent();
+		if (!existingDirectories.contains(parent)) {
+			if (!Files.exists(parent)) {
+				Files.createDirectories(parent);
+			}
+			existingDirectories.add(parent);
+		}
+		return filePath;
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "testdoc-writer-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	private static final class Pending {
+		private final String document;
+		private final Future<?> future;
+
+		Pending(String document, Future<?> future) {
+			this.document = document;
+			this.future = future;
+		}
+	}
+}
@@ -18,28 +18,34 @@ package de.flapdoodle.testdoc;
 
 import de.flapdoodle.testdoc.Stacktraces.Scope;
 
+import java.util.function.Function;
+
 public class Recorder {
 
 	public static Recording with(String template) {
-		return generateMarkDown(Scope.CallerOfCallerWithDelegate, template, ReplacementPattern.DEFAULT, TabSize.spaces(8));
+		return generateMarkDown(Scope.CallerOfCallerWithDelegate, clazz -> with(clazz, template, ReplacementPattern.DEFAULT, TabSize.spaces(8)));
 	}
 
 	public static Recording with(String template, TabSize tabSize) {
-		return generateMarkDown(Scope.CallerOfCallerWithDelegate, template, ReplacementPattern.DEFAULT, tabSize);
+		return generateMarkDown(Scope.CallerOfCallerWithDelegate, clazz -> with(clazz, template, ReplacementPattern.DEFAULT, tabSize));
 	}
 
 	public static Recording with(String template, ReplacementPattern replacementPattern, TabSize tabSize) {
-		return generateMarkDown(Scope.CallerOfCallerWithDelegate, template, replacementPattern, tabSize);
+		return generateMarkDown(Scope.CallerOfCallerWithDelegate, clazz -> with(clazz, template, replacementPattern, tabSize));
+	}
+
+	public static Recording with(String template, Delimiters delimiters, TabSize tabSize) {
+		return generateMarkDown(Scope.CallerOfCallerWithDelegate, clazz -> with(clazz, template, delimiters, tabSize));
 	}
 
-	private static Recording generateMarkDown(Scope scope, String template, ReplacementPattern replacementPattern, TabSize tabSize) {
+	private static Recording generateMarkDown(Scope scope, Function<Class<?>, Recording> recordingOf) {
 		try {
 			Line currentLine = Stacktraces.currentLine(scope);
 			String testClassName = currentLine.className();
 //			String testFilename = currentLine.fileName();
 //			System.out.println("Class -> "+testClassName);
 			Class<?> clazz = Class.forName(testClassName);
-			return with(clazz, template, replacementPattern, tabSize);
+			return recordingOf.apply(clazz);
 		} catch (RuntimeException | ClassNotFoundException rx) {
 			throw new RuntimeException(rx);
 		}
@@ -53,4 +59,8 @@ public class Recorder {
 	protected static Recording with(Class<?> clazz, String template, ReplacementPattern replacementPattern, TabSize tabSize) {
 		return new Recording(TemplateReference.of(clazz, template, replacementPattern), Resources.sourceCodeOf(clazz,  tabSize).get(), tabSize);
 	}
+
+	protected static Recording with(Class<?> clazz, String template, Delimiters delimiters, TabSize tabSize) {
+		return new Recording(TemplateReference.of(clazz, template, delimiters), Resources.sourceCodeOf(clazz,  tabSize).get(), tabSize);
+	}
 }
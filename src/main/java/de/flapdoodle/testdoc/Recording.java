@@ -20,13 +20,13 @@ import de.flapdoodle.testdoc.Stacktraces.Scope;
 import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -36,56 +36,101 @@ public class Recording implements AfterAllCallback {
 	private static final ThreadLocal<RenderOutputDelegate> templateConsumer = new ThreadLocal<>();
 
 	private final TemplateReference templateReference;
-	private final List<String> testSourceCode;
-	private final List<HasLine> lines = new ArrayList<>();
-	private final Map<String, CalledMethod> calledMethod = new LinkedHashMap<>();
-	private final Map<String, String> classes = new LinkedHashMap<>();
-	private final Map<String, String> resources = new LinkedHashMap<>();
-	private final Map<String, String> output = new LinkedHashMap<>();
-	private final Map<String, byte[]> files = new LinkedHashMap<>();
+	private final SourceLines testSourceCode;
+	private final MethodRecording shared = new MethodRecording("");
+	private final ConcurrentMap<String, MethodRecording> methodRecordings = new ConcurrentHashMap<>();
 
 	private final TabSize tabSize;
-	private Optional<BiFunction<String, Set<String>, String>> replacementNotFoundFallback = Optional.empty();
-	private Optional<String> renderTo = Optional.empty();
+	private volatile Optional<MissingReplacements> missingReplacements = Optional.empty();
+	private volatile Optional<String> renderTo = Optional.empty();
 
 	protected Recording(TemplateReference templateReference, List<String> testSourceCode, TabSize tabSize) {
 		this.tabSize = tabSize;
 		this.templateReference = Preconditions.checkNotNull(templateReference, "template name is null");
-		this.testSourceCode = new ArrayList<>(Preconditions.checkNotNull(testSourceCode, "linesOfCode is null"));
+		this.testSourceCode = SourceLines.of(Preconditions.checkNotNull(testSourceCode, "linesOfCode is null"));
 	}
 
 	public Recording sourceCodeOf(String label, Class<?> clazz, Includes... includeOptions) {
+		shared.sourceCode(Optional.empty(), label, sourceCodeOf(clazz, includeOptions));
+		return this;
+	}
+
+	/**
+	 * @param tag name of the region between {@code tag::name[]} and {@code end::name[]}
+	 */
+	public Recording sourceCodeOf(String label, Class<?> clazz, String tag, Includes... includeOptions) {
+		shared.sourceCode(Optional.empty(), label, sourceCodeOf(clazz, tag, includeOptions));
+		return this;
+	}
+
+	private String sourceCodeOf(Class<?> clazz, String tag, Includes... includeOptions) {
+		Optional<List<String>> sourceCode = Resources.sourceCodeOf(clazz, tabSize, tag, includeOptions);
+		Preconditions.checkArgument(sourceCode.isPresent(), "could not find sourceCode of %s", clazz);
+		return Resources.joinedWithNewLine(sourceCode.get());
+	}
+
+	private String sourceCodeOf(Class<?> clazz, Includes... includeOptions) {
 		Optional<List<String>> sourceCode = Resources.sourceCodeOf(clazz, tabSize, includeOptions);
 		Preconditions.checkArgument(sourceCode.isPresent(), "could not find sourceCode of %s", clazz);
-		String old = classes.put(label, Resources.joinedWithNewLine(sourceCode.get()));
-		Preconditions.checkArgument(old == null, "sourceCodeOf with label %s was already set to %s", label, old);
-		return this;
+		return Resources.joinedWithNewLine(sourceCode.get());
 	}
 
 	/**
-	 * use with care, it is not stable, it can happen that
-	 * the wrong fragment is used
+	 * source code of the calling method without the line of this call,
+	 * the method is looked up in the outline of the test source
 	 * @param label name for this segment
 	 */
-	@Deprecated
 	public Recording thisMethod(String label) {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
-		CalledMethod old = calledMethod.put(label, CalledMethod.of(currentLine));
-		Preconditions.checkArgument(old == null, "method with label %s was already set to %s", label, old);
+		methodRecording(currentLine).calledMethod(label, CalledMethod.of(currentLine));
 		return this;
 	}
 
 	public Recording resource(String label, Class<?> clazz, String resourceName, ResourceFilter... filters) {
-		Optional<String> resource = Resources.resource(clazz, resourceName);
-		Preconditions.checkArgument(resource.isPresent(), "could not find resource of %s:%s", clazz, resourceName);
-		String old = resources.put(label, resource.map(ResourceFilter.join(filters)).get());
-		Preconditions.checkArgument(old == null, "resource with label %s was already set to %s", label, old);
+		shared.resource(Optional.empty(), label, resourceOf(clazz, resourceName, filters));
 		return this;
 	}
 
+	/**
+	 * includes only a part of the resource, see {@link ResourcePart}
+	 */
+	public Recording resource(String label, Class<?> clazz, String resourceName, ResourcePart part, ResourceFilter... filters) {
+		shared.resource(Optional.empty(), label, resourceOf(clazz, resourceName, part, filters));
+		return this;
+	}
+
+	private static String resourceOf(Class<?> clazz, String resourceName, ResourcePart part, ResourceFilter... filters) {
+		ResourceFilter filter = ResourceFilter.join(filters);
+		Optional<String> resource = filter instanceof LineFilter
+			? Resources.resource(clazz, resourceName, part, (LineFilter) filter)
+			: Resources.resource(clazz, resourceName, part, next -> next).map(filter);
+		Preconditions.checkArgument(resource.isPresent(), "could not find resource of %s:%s", clazz, resourceName);
+		return resource.get();
+	}
+
+	private static String resourceOf(Class<?> clazz, String resourceName, ResourceFilter... filters) {
+		ResourceFilter filter = ResourceFilter.join(filters);
+		Optional<String> resource = filter instanceof LineFilter
+			? Resources.resource(clazz, resourceName, (LineFilter) filter)
+			: Resources.resource(clazz, resourceName).map(filter);
+		Preconditions.checkArgument(resource.isPresent(), "could not find resource of %s:%s", clazz, resourceName);
+		return resource.get();
+	}
+
+	/**
+	 * @param fallback called once for each label without replacement
+	 */
 	public Recording replacementNotFoundFallback(BiFunction<String, Set<String>, String> fallback) {
-		Preconditions.checkArgument(!replacementNotFoundFallback.isPresent(), "already set to: %s", replacementNotFoundFallback);
-		this.replacementNotFoundFallback = Optional.of(fallback);
+		return missingReplacements(MissingReplacements.eachOf(fallback));
+	}
+
+	/**
+	 * @param missingReplacements called once with all labels without replacement
+	 */
+	public Recording missingReplacements(MissingReplacements missingReplacements) {
+		Preconditions.checkNotNull(missingReplacements, "missingReplacements is null");
+		Preconditions.checkArgument(!this.missingReplacements.isPresent(), "already set to: %s", this.missingReplacements);
+		this.missingReplacements = Optional.of(missingReplacements);
 		return this;
 	}
 
@@ -98,109 +143,156 @@ public class Recording implements AfterAllCallback {
 
 	@Override
 	public void afterAll(ExtensionContext extensionContext) {
-		String renderedTemplate = Renderer.renderTemplate(Recordings.builder()
+		List<Markers> markers = new ArrayList<>();
+		Map<String, CalledMethod> calledMethod = new LinkedHashMap<>();
+		Map<String, String> classes = new LinkedHashMap<>();
+		Map<String, String> resources = new LinkedHashMap<>();
+		Map<String, String> output = new LinkedHashMap<>();
+		Map<String, OutputFiles.Content> files = new LinkedHashMap<>();
+
+		// merge in source order, so the result does not depend on execution order
+		shared.copyTo(markers, calledMethod, classes, resources, output, files);
+		methodRecordings.values().stream()
+			.sorted(MethodRecording.IN_SOURCE_ORDER)
+			.forEach(it -> it.copyTo(markers, calledMethod, classes, resources, output, files));
+
+		Recordings recordings = Recordings.builder()
 			.templateReference(templateReference)
 			.linesOfCode(testSourceCode)
-			.lines(lines)
+			.markers(markers)
 			.methodsCalled(calledMethod)
 			.classes(classes)
 			.resources(resources)
 			.output(output)
-			.replacementNotFoundFallback(replacementNotFoundFallback)
-			.build());
+			.missingReplacements(missingReplacements)
+			.build();
+
+		String templateName = renderTo.orElse(templateReference.templateName());
+		Runnable render = () -> renderAndWrite(templateName, recordings, files);
+		if (templateConsumer.get() != null || !RenderPipeline.instance().defer(templateName, templateReference.clazz(), render)) {
+			render.run();
+		}
+	}
 
-		writeResult(renderTo.orElse(templateReference.templateName()), renderedTemplate, files);
+	private static void renderAndWrite(String templateName, Recordings recordings, Map<String, OutputFiles.Content> files) {
+		Optional<String> fingerprint = templateConsumer.get() == null && Configuration.get(DEST_DIR_PROPERTY).isPresent()
+			? RenderFingerprint.of(templateName, recordings, files)
+			: Optional.empty();
+		if (fingerprint.isPresent() && RenderFingerprint.matches(destination(), templateName, files.keySet(), fingerprint.get())) {
+			return;
+		}
+		writeResult(templateName, Renderer.rendering(recordings), files, Optional.of(recordings.templateReference().clazz()), fingerprint);
 	}
 
 	protected static void writeResult(String templateName, String renderedTemplate, Map<String, byte[]> files) {
+		Map<String, OutputFiles.Content> contents = new LinkedHashMap<>();
+		files.forEach((name, content) -> contents.put(name, OutputFiles.content(content)));
+		writeResult(templateName, Rendering.of(renderedTemplate), contents, Optional.empty(), Optional.empty());
+	}
+
+	private static void writeResult(String templateName, Rendering rendering, Map<String, OutputFiles.Content> files, Optional<Class<?>> testClass, Optional<String> fingerprint) {
 		if (templateConsumer.get() != null) {
-			templateConsumer.get().writeResult(templateName, renderedTemplate, files);
+			Map<String, byte[]> bytes = new LinkedHashMap<>();
+			files.forEach((name, content) -> bytes.put(name, OutputFiles.bytesOf(content)));
+			templateConsumer.get().writeResult(templateName, rendering.asString(), bytes);
 		} else {
-			String destination = System.getProperty(DEST_DIR_PROPERTY);
-			if (destination != null) {
-				Path destinationPath = Paths.get(destination);
-				Preconditions.checkArgument(Files.exists(destinationPath),"%s does not exist", destinationPath);
-				Preconditions.checkArgument(Files.isDirectory(destinationPath),"%s is not a directory", destinationPath);
-				Path output = destinationPath.resolve(templateName);
-				try {
-					createParentDirectoryIfNeeded(output);
-					Files.write(output, renderedTemplate.getBytes(StandardCharsets.UTF_8), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
-						StandardOpenOption.TRUNCATE_EXISTING);
-
-					for (Map.Entry<String, byte[]> entry : files.entrySet()) {
-						Path filePath = createParentDirectoryIfNeeded(destinationPath.resolve(entry.getKey()));
-						Files.write(filePath, entry.getValue(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
-							StandardOpenOption.TRUNCATE_EXISTING);
-					}
-				}
-				catch (IOException iox) {
-					throw new RuntimeException("could not write " + output, iox);
-				}
+			if (Configuration.get(DEST_DIR_PROPERTY).isPresent()) {
+				OutputWriter.instance().write(destination(), templateName, rendering, files, testClass, fingerprint);
 			} else {
 				System.out.println(DEST_DIR_PROPERTY + " not set");
 				System.out.println("---------------------------");
 				System.out.println("should write " + templateName);
 				System.out.println("---------------------------");
-				System.out.println(renderedTemplate);
+				System.out.println(rendering.asString());
 				System.out.println("---------------------------");
 				files.forEach((file, content) -> {
-					System.out.println("- "+file+" -> "+content.length+" bytes");
+					OptionalLong size = content.size();
+					System.out.println("- "+file+(size.isPresent() ? " -> "+size.getAsLong()+" bytes" : ""));
 				});
 				if (!files.isEmpty()) System.out.println("---------------------------");
 			}
 		}
 	}
 
-	private static Path createParentDirectoryIfNeeded(Path filePath) throws IOException {
-		Path parent = filePath.getParent();
-		if (!Files.exists(parent)) {
-			Files.createDirectories(parent);
-		}
-		return filePath;
+	private static Path destination() {
+		Path destinationPath = Paths.get(Configuration.get(DEST_DIR_PROPERTY).get());
+		Preconditions.checkArgument(Files.exists(destinationPath),"%s does not exist", destinationPath);
+		Preconditions.checkArgument(Files.isDirectory(destinationPath),"%s is not a directory", destinationPath);
+		return destinationPath;
 	}
 
 	public void include(Class<?> clazz, Includes... includeOptions) {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
 		String label = currentLine.methodName() + "." + clazz.getSimpleName();
-		sourceCodeOf(label, clazz, includeOptions);
+		methodRecording(currentLine).sourceCode(Optional.of(currentLine), label, sourceCodeOf(clazz, includeOptions));
+	}
+
+	public void include(Class<?> clazz, String tag, Includes... includeOptions) {
+		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
+		String label = currentLine.methodName() + "." + clazz.getSimpleName() + ":" + tag;
+		methodRecording(currentLine).sourceCode(Optional.of(currentLine), label, sourceCodeOf(clazz, tag, includeOptions));
 	}
 
 	public void resource(Class<?> clazz, String resourceName, ResourceFilter... filters) {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
 		String label = currentLine.methodName() + "." + clazz.getSimpleName() + ":" + resourceName;
-		resource(label, clazz, resourceName, filters);
+		methodRecording(currentLine).resource(Optional.of(currentLine), label, resourceOf(clazz, resourceName, filters));
+	}
+
+	public void resource(Class<?> clazz, String resourceName, ResourcePart part, ResourceFilter... filters) {
+		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
+		String label = currentLine.methodName() + "." + clazz.getSimpleName() + ":" + resourceName;
+		methodRecording(currentLine).resource(Optional.of(currentLine), label, resourceOf(clazz, resourceName, part, filters));
 	}
 
 	public void output(String label, String content) {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
-		String scopedLabel = currentLine.methodName() + "." + label;
-		String old = output.put(scopedLabel, content);
-		Preconditions.checkArgument(old == null, "%s already set to %s", label, old);
+		methodRecording(currentLine).output(currentLine, label, content);
 	}
 
 	public void file(String label, String fileName, byte[] content) {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
-		String scopedLabel = currentLine.methodName() + "." + label;
-		String old = output.put(scopedLabel, fileName);
-		Preconditions.checkArgument(old == null, "%s already set to %s", label, old);
-		byte[] oldContent = files.put(fileName, Arrays.copyOf(content, content.length));
-		Preconditions.checkArgument(oldContent == null, "%s/%s already set", label, fileName);
+		methodRecording(currentLine).file(currentLine, label, fileName, OutputFiles.content(Arrays.copyOf(content, content.length)));
+	}
+
+	/**
+	 * the file is not read now, it is copied when the document is written after all tests
+	 * of the class, so it must exist until then: a {@code @TempDir} of a test method is
+	 * already deleted by then, use a static {@code @TempDir} or {@link #file(String, String, byte[])}
+	 */
+	public void file(String label, String fileName, Path content) {
+		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
+		Preconditions.checkArgument(Files.isRegularFile(content), "%s is not a file", content);
+		methodRecording(currentLine).file(currentLine, label, fileName, OutputFiles.content(content, "file " + fileName + " (" + content + ")"));
+	}
+
+	/**
+	 * the stream is opened when the document is written after all tests of the class and
+	 * may be opened more than once, so everything it reads from must exist until then
+	 */
+	public void file(String label, String fileName, ThrowingSupplier<? extends InputStream, ?> content) {
+		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
+		methodRecording(currentLine).file(currentLine, label, fileName, OutputFiles.content(content));
 	}
 
 
 	public void begin() {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
-		lines.add(Start.of(currentLine));
+		methodRecording(currentLine).start(currentLine, Optional.empty());
 	}
 
 	public void begin(String label) {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
-		lines.add(Start.of(label, currentLine));
+		methodRecording(currentLine).start(currentLine, Optional.of(label));
 	}
 
 	public void end() {
 		Line currentLine = Stacktraces.currentLine(Scope.CallerOfCaller);
-		lines.add(End.of(currentLine));
+		methodRecording(currentLine).end(currentLine);
+	}
+
+	private MethodRecording methodRecording(Line currentLine) {
+		return methodRecordings.computeIfAbsent(currentLine.methodName(), MethodRecording::new);
 	}
 
 	private static RenderOutputDelegate setTemplateConsumerForInternalUse(RenderOutputDelegate consumer) {
@@ -32,6 +32,11 @@ public interface Recordings {
 
 	List<HasLine> lines();
 
+	/**
+	 * begin/end markers packed by method, {@link Markers#byMethod} creates them from {@link #lines()}
+	 */
+	List<Markers> markers();
+
 	Map<String, CalledMethod> methodsCalled();
 
 	Map<String, String> classes();
@@ -42,6 +47,23 @@ public interface Recordings {
 
 	Optional<BiFunction<String, Set<String>, String>> replacementNotFoundFallback();
 
+	Optional<MissingReplacements> missingReplacements();
+
+	/**
+	 * @return missingReplacements or replacementNotFoundFallback as MissingReplacements
+	 */
+	default Optional<MissingReplacements> missingReplacementsOrFallback() {
+		return missingReplacements().isPresent()
+			? missingReplacements()
+			: replacementNotFoundFallback().map(MissingReplacements::eachOf);
+	}
+
+	@Value.Check
+	default void checkOnlyOneFallback() {
+		Preconditions.checkArgument(!(missingReplacements().isPresent() && replacementNotFoundFallback().isPresent()),
+			"missingReplacements and replacementNotFoundFallback are both set");
+	}
+
 	static ImmutableRecordings.Builder builder() {
 		return ImmutableRecordings.builder();
 	}
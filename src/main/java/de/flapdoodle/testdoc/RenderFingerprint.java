@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * hash over everything a document is rendered from
+ *
+ * if de.flapdoodle.testdoc.renderFingerprint is set, the fingerprint is stored
+ * in the fingerprints directory of the disk cache, so nothing but documents and
+ * files end up in the destination, rendering is skipped if it did not change
+ * and the document and its files still exist, without a disk cache there
+ * are no fingerprints
+ */
+abstract class RenderFingerprint {
+
+	static final String RENDER_FINGERPRINT_PROPERTY = "de.flapdoodle.testdoc.renderFingerprint";
+
+	// change if rendering changes
+	private static final int RENDER_VERSION = 1;
+
+	private static final boolean ENABLED = Configuration.getBoolean(RENDER_FINGERPRINT_PROPERTY);
+	private static final Optional<Path> DIRECTORY = DiskCache.instance()
+		.map(cache -> cache.directory().resolve("fingerprints"));
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private RenderFingerprint() {
+		// no instance
+	}
+
+	/**
+	 * @return empty if disabled, if there is no disk cache or if the document depends on missing replacements
+	 */
+	static Optional<String> of(String templateName, Recordings recordings, Map<String, OutputFiles.Content> files) {
+		return ENABLED && DIRECTORY.isPresent()
+			? fingerprintOf(templateName, recordings, files)
+			: Optional.empty();
+	}
+
+	static Optional<String> fingerprintOf(String templateName, Recordings recordings, Map<String, OutputFiles.Content> files) {
+		if (recordings.missingReplacementsOrFallback().isPresent()) {
+			// function results can not be compared
+			return Optional.empty();
+		}
+
+		ContentHash hash = ContentHash.create()
+			.add(RENDER_VERSION)
+			.add(DiskCache.LIBRARY_VERSION)
+			.add(templateName);
+
+		TemplateReference reference = recordings.templateReference();
+		hash.add(reference.clazz().getName())
+			.add(reference.templateName())
+			.add(reference.delimiters().open())
+			.add(reference.delimiters().close())
+			.add(reference.delimiters().labelCharacters());
+		Optional<Template> template = Templates.templateOf(reference);
+		if (template.isPresent()) {
+			hash.add(1).add(template.get().source());
+		} else {
+			hash.add(0).add(Templates.missingTemplateFallback().source());
+		}
+
+		hash.add(recordings.linesOfCode());
+
+		hash.add(recordings.lines().size());
+		recordings.lines().forEach(line -> hash.add(String.valueOf(line)));
+		hash.add(recordings.markers().size());
+		for (Markers markers : recordings.markers()) {
+			hash.add(markers.methodName()).add(markers.size());
+			for (int i = 0; i < markers.size(); i++) {
+				hash.add(markers.isStart(i) ? 1 : 0)
+					.add(markers.lineNumber(i))
+					.add(markers.label(i).orElse(""))
+					.add(markers.label(i).isPresent() ? 1 : 0);
+			}
+			hash.add(String.valueOf(markers.fileNames()));
+		}
+
+		hash.add(recordings.methodsCalled().size());
+		recordings.methodsCalled().forEach((label, calledMethod) -> hash.add(label).add(String.valueOf(calledMethod.line())));
+
+		add(hash, recordings.classes());
+		add(hash, recordings.resources());
+		add(hash, recordings.output());
+
+		hash.add(files.size());
+		files.forEach((name, content) -> hash.add(name).add(hashOf(content)));
+
+		return Optional.of(hash.asHex());
+	}
+
+	private static String hashOf(OutputFiles.Content content) {
+		ContentHash ret = ContentHash.create();
+		try {
+			content.writeTo(ret.channel());
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not read content", iox);
+		}
+		return ret.asHex();
+	}
+
+	private static void add(ContentHash hash, Map<String, String> map) {
+		hash.add(map.size());
+		map.forEach((key, value) -> hash.add(key).add(value));
+	}
+
+	/**
+	 * @return true if the stored fingerprint matches, and document and files exist
+	 */
+	static boolean matches(Path destination, String templateName, Set<String> fileNames, String fingerprint) {
+		return matches(directory(), destination, templateName, fileNames, fingerprint);
+	}
+
+	static boolean matches(Path directory, Path destination, String templateName, Set<String> fileNames, String fingerprint) {
+		boolean ret = storedMatches(directory, destination, templateName, fileNames, fingerprint);
+		(ret ? hits : misses).incrementAndGet();
+		return ret;
+	}
+
+	private static boolean storedMatches(Path directory, Path destination, String templateName, Set<String> fileNames, String fingerprint) {
+		Path output = destination.resolve(templateName);
+		if (!Files.isRegularFile(output) || !fileNames.stream().allMatch(name -> Files.isRegularFile(destination.resolve(name)))) {
+			return false;
+		}
+		try {
+			return fingerprint.equals(new String(Files.readAllBytes(fileOf(directory, output)), StandardCharsets.US_ASCII));
+		}
+		catch (IOException iox) {
+			return false;
+		}
+	}
+
+	static void store(Path destination, String templateName, String fingerprint) throws IOException {
+		store(directory(), destination, templateName, fingerprint);
+	}
+
+	static void store(Path directory, Path destination, String templateName, String fingerprint) throws IOException {
+		Path file = fileOf(directory, destination.resolve(templateName));
+		Files.createDirectories(file.getParent());
+		Files.write(file, fingerprint.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * @return number of documents not rendered, because nothing changed
+	 */
+	static long hits() {
+		return hits.get();
+	}
+
+	static long misses() {
+		return misses.get();
+	}
+
+	private static Path directory() {
+		return Preconditions.checkPresent(DIRECTORY, "no disk cache, set %s", DiskCache.CACHE_DIRECTORY_PROPERTY).get();
+	}
+
+	// one file for each document
+	static Path fileOf(Path directory, Path output) {
+		return directory.resolve(ContentHash.create().add(output.toAbsolutePath().normalize().toString()).asHex());
+	}
+}
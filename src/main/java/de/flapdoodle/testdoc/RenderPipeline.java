@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * renders documents when the launcher session is closed
+ *
+ * if de.flapdoodle.testdoc.deferRendering is set, recordings finished while a launcher
+ * session is open are rendered and written at the end of the session, all at once on a
+ * fork join pool (de.flapdoodle.testdoc.deferRendering.parallelism threads), instead of
+ * one after another on the test threads (see TestdocLauncherSessionListener)
+ */
+final class RenderPipeline {
+
+	static final String DEFER_RENDERING_PROPERTY = "de.flapdoodle.testdoc.deferRendering";
+	static final String PARALLELISM_PROPERTY = "de.flapdoodle.testdoc.deferRendering.parallelism";
+
+	private static final RenderPipeline INSTANCE = new RenderPipeline(
+		Configuration.getBoolean(DEFER_RENDERING_PROPERTY),
+		Configuration.getLong(PARALLELISM_PROPERTY)
+			.map(Long::intValue)
+			.orElse(Runtime.getRuntime().availableProcessors())
+	);
+
+	private final boolean enabled;
+	private final int parallelism;
+	private final AtomicInteger openSessions = new AtomicInteger();
+	private final ConcurrentLinkedQueue<Deferred> deferred = new ConcurrentLinkedQueue<>();
+
+	RenderPipeline(boolean enabled, int parallelism) {
+		Preconditions.checkArgument(parallelism > 0, "invalid parallelism: %s", parallelism);
+		this.enabled = enabled;
+		this.parallelism = parallelism;
+	}
+
+	static RenderPipeline instance() {
+		return INSTANCE;
+	}
+
+	void sessionOpened() {
+		openSessions.incrementAndGet();
+	}
+
+	void sessionClosed() {
+		openSessions.decrementAndGet();
+		renderDeferred();
+	}
+
+	/**
+	 * @param testClass which recorded the document, reported if it could not be rendered
+	 * @return false if rendering is not deferred, so the caller must render now
+	 */
+	boolean defer(String templateName, Class<?> testClass, Runnable render) {
+		if (enabled && openSessions.get() > 0) {
+			deferred.add(new Deferred(OutputWriter.documentOf(templateName, Optional.of(testClass)), render));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * renders all deferred documents in parallel
+	 * @throws RuntimeException if any of them could not be rendered
+	 */
+	void renderDeferred() {
+		List<Deferred> jobs = new ArrayList<>();
+		Deferred next;
+		while ((next = deferred.poll()) != null) {
+			jobs.add(next);
+		}
+		if (jobs.isEmpty()) {
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, jobs.size()));
+		try {
+			List<ForkJoinTask<?>> running = new ArrayList<>(jobs.size());
+			for (Deferred job : jobs) {
+				running.add(pool.submit(job.render));
+			}
+
+			List<RuntimeException> failed = new ArrayList<>();
+			for (int i = 0; i < running.size(); i++) {
+				try {
+					running.get(i).get();
+				}
+				catch (ExecutionException ex) {
+					failed.add(new RuntimeException("could not render " + jobs.get(i).document, ex.getCause()));
+				}
+				catch (InterruptedException ix) {
+					Thread.currentThread().interrupt();
+					failed.add(new RuntimeException("interrupted while rendering " + jobs.get(i).document, ix));
+				}
+			}
+			OutputWriter.throwIfAnyFailed(failed);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private static final class Deferred {
+		private final String document;
+		private final Runnable render;
+
+		Deferred(String document, Runnable render) {
+			this.document = document;
+			this.render = render;
+		}
+	}
+}
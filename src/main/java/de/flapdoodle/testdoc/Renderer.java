@@ -20,67 +20,109 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public abstract class Renderer {
 
-	private static Pattern WHITESPACES=Pattern.compile("\\s*");
-
 	protected static String renderTemplate(Recordings recordings) {
-		Map<String, List<HasLine>> usedFilenames = recordings.lines().stream()
-			.collect(Collectors.groupingBy((HasLine l) -> l.line().fileName()));
+		return rendering(recordings).asString();
+	}
+
+	static Rendering rendering(Recordings recordings) {
+		Map<String, Markers> markersByMethod = markersByMethod(recordings);
 
-		Preconditions.checkArgument(usedFilenames.size()<=1, "more than one used filename: ",usedFilenames.keySet());
+		Set<String> usedFilenames = new LinkedHashSet<>();
+		markersByMethod.values().forEach(markers -> usedFilenames.addAll(markers.fileNames()));
 
-		Map<String, List<HasLine>> methodNames = recordings.lines().stream()
-			.collect(Collectors.groupingBy((HasLine l) -> l.line().methodName()));
+		Preconditions.checkArgument(usedFilenames.size()<=1, "more than one used filename: ",usedFilenames);
 
-		Map<String, List<Block>> recordingsByMethod = recordingsByMethod(methodNames, recordings.linesOfCode());
+		Map<String, List<Block>> recordingsByMethod = recordingsByMethod(markersByMethod, recordings.linesOfCode());
 
 		return render(recordings, recordingsByMethod);
 	}
 
-	private static String render(Recordings recordings, Map<String, List<Block>> recordingsByMethod) {
-		Map<String, String> joinedMap = merge(recordings, recordingsByMethod);
+	private static Map<String, Markers> markersByMethod(Recordings recordings) {
+		Map<String, Markers> ret = new LinkedHashMap<>();
+		recordings.markers().forEach(markers -> ret.merge(markers.methodName(), markers, Renderer::join));
+		Markers.byMethod(recordings.lines()).forEach((method, markers) -> ret.merge(method, markers, Renderer::join));
+		return ret;
+	}
+
+	private static Markers join(Markers first, Markers second) {
+		Markers ret = first.copy();
+		ret.addAll(second);
+		return ret;
+	}
+
+	private static Rendering render(Recordings recordings, Map<String, List<Block>> recordingsByMethod) {
+		Map<String, Supplier<Fragment>> joinedMap = merge(recordings, recordingsByMethod);
+
+		Template template = Templates.templateOf(recordings.templateReference())
+			.orElseGet(() -> Template.of(templateFrom(recordings.templateReference(), joinedMap), recordings.templateReference().delimiters()));
+
+		// only replacements used in the template are computed, each one once
+		CompiledTemplate compiled = template.compiled();
+		Fragment[] slots = new Fragment[compiled.slots()];
+		Set<String> missing = new LinkedHashSet<>();
+		for (int slot = 0; slot < slots.length; slot++) {
+			Supplier<Fragment> replacement = joinedMap.get(compiled.slotName(slot));
+			if (replacement != null) {
+				slots[slot] = replacement.get();
+			} else {
+				missing.add(compiled.slotName(slot));
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			Set<String> recordedLabels = Collections.unmodifiableSet(joinedMap.keySet());
+			MissingReplacements missingReplacements = Preconditions.checkNotNull(recordings.missingReplacementsOrFallback().orElse(null),
+				"could not resolve %s in %s", missing.iterator().next(), recordedLabels);
+			Map<String, String> replacements = Preconditions.checkNotNull(
+				missingReplacements.replacementsFor(Collections.unmodifiableSet(missing), recordedLabels),
+				"fallback return null for %s", missing);
+			for (String label : missing) {
+				slots[compiled.slotOf(label)] = Fragment.of(Preconditions.checkNotNull(replacements.get(label), "fallback return null for %s", label));
+			}
+		}
+		return Rendering.of(template, slots);
+	}
 
-		String templateContent = recordings.templateReference().readContent()
-			.orElseGet(() -> templateFrom(recordings.templateReference(), joinedMap));
-		ReplacementPattern replacementPattern = recordings.templateReference().replacementPattern();
-		
-		return recordings.replacementNotFoundFallback().isPresent()
-				? Template.render(Template.of(templateContent, replacementPattern), joinedMap, recordings.replacementNotFoundFallback().get())
-				: Template.render(Template.of(templateContent, replacementPattern), joinedMap);
+	private static String templateFrom(TemplateReference templateReference, Map<String, Supplier<Fragment>> joinedMap) {
+		CompiledTemplate fallback = Templates.missingTemplateFallback().compiled();
+		Fragment[] slots = new Fragment[fallback.slots()];
+		bind(fallback, slots, "templateName", templateReference.templateName());
+		bind(fallback, slots, "templateClass", templateReference.clazz().getName());
+		bind(fallback, slots, "recordedParts", joinedMap.keySet().stream()
+			.map(key -> "* `"+key+"`")
+			.collect(Collectors.joining("\n")));
+		return fallback.render(slots);
 	}
 
-	private static String templateFrom(TemplateReference templateReference, Map<String, String> joinedMap) {
-		String source = TemplateReference.readContent(Renderer.class, "template-is-missing-fallback.md");
-		return Template.render(Template.of(source), Replacements.builder()
-				.putReplacement("templateName", templateReference.templateName())
-				.putReplacement("templateClass", templateReference.clazz().getName())
-				.putReplacement("recordedParts", joinedMap.keySet().stream()
-					.map(key -> "* `"+key+"`")
-					.collect(Collectors.joining("\n")))
-			.build().replacement());
+	private static void bind(CompiledTemplate template, Fragment[] slots, String label, String value) {
+		int slot = template.slotOf(label);
+		if (slot != -1) {
+			slots[slot] = Fragment.of(value);
+		}
 	}
 
-	private static Map<String, String> merge(Recordings recordings, Map<String, List<Block>> recordingsByMethod) {
+	private static Map<String, Supplier<Fragment>> merge(Recordings recordings, Map<String, List<Block>> recordingsByMethod) {
 		Set<String> usedKeys=new LinkedHashSet<>();
 
-		ImmutableReplacements.Builder builder = Replacements.builder();
+		Map<String, Supplier<Fragment>> replacements = new LinkedHashMap<>();
 		recordingsByMethod.forEach((method, blocks) -> {
-			builder.putReplacement(method, formatBlocks(blocks));
+			replacements.put(method, once(() -> formatBlocks(blocks)));
 			usedKeys.add(method);
 
 			AtomicInteger counter=new AtomicInteger(0);
 			for (Block block : blocks) {
 				String blockLabel = method+"."+counter.incrementAndGet();
-				builder.putReplacement(blockLabel, block.content);
+				replacements.put(blockLabel, block.content);
 				usedKeys.add(blockLabel);
 
 				if (block.label.isPresent()) {
 					String secondBlockLabel = method + "." + block.label.get();
-					builder.putReplacement(secondBlockLabel, block.content);
+					replacements.put(secondBlockLabel, block.content);
 					usedKeys.add(secondBlockLabel);
 				}
 			}
@@ -88,148 +130,92 @@ public abstract class Renderer {
 
 		Function<String, BiConsumer<? super String, ? super String>> checkAndAddToBuilderFactory=scope -> (key, value) -> {
 			Preconditions.checkArgument(!usedKeys.contains(key), scope+": already set: %s",key);
-			builder.putReplacement(key, value);
+			Fragment fragment = Fragment.of(value);
+			replacements.put(key, () -> fragment);
 			usedKeys.add(key);
 		};
 
 		recordings.classes().forEach(checkAndAddToBuilderFactory.apply("classes"));
 		recordings.resources().forEach(checkAndAddToBuilderFactory.apply("resources"));
 		recordings.output().forEach(checkAndAddToBuilderFactory.apply("output"));
+		// parsed only if a used replacement needs it
+		Supplier<SourceOutline> outline = once(() -> SourceOutline.of(recordings.linesOfCode()));
 		recordings.methodsCalled().forEach((label, calledMethod) -> {
-			String methodCode = findSurroundingMethodOf(recordings.linesOfCode(), calledMethod);
-			builder.putReplacement(label, methodCode);
+			replacements.put(label, once(() -> findSurroundingMethodOf(outline.get(), recordings.linesOfCode(), calledMethod)));
 		});
-		return builder.build().replacement();
+		return replacements;
 	}
 
-	private static final String CLOSING_BRACE_REGEX="\\s*}\\s*";
-
-	private static String findSurroundingMethodOf(List<String> linesOfCode, CalledMethod calledMethod) {
+	private static Fragment findSurroundingMethodOf(SourceOutline outline, List<String> linesOfCode, CalledMethod calledMethod) {
 		int lineIndex = calledMethod.line().lineIndex();
 
-		Preconditions.checkArgument(lineIndex <= linesOfCode.size(),"line number(%s) > lines of code(%s)", lineIndex, linesOfCode.size());
-//		System.out.println(linesOfCode.size()+" ? "+ lineIndex);
-//		System.out.println(linesOfCode.get(lineIndex - 1));
-
-		int start=-1;
-		int end=-1;
-
-		for (int i=lineIndex-1; i>=0;i--) {
-			String line = linesOfCode.get(i);
-			if (line.contains(calledMethod.line().methodName())) {
-//				System.out.println("found "+line+" at "+i);
-				start=i;
-				break;
-			}
-		}
-		Preconditions.checkArgument(start!=-1,"could not find method declaration for "+calledMethod.line().methodName());
-
-		for (int i=lineIndex;i<linesOfCode.size();i++) {
-			String lastLine = i >0 ? linesOfCode.get(i-1) : "{}";
-			String line = linesOfCode.get(i);
-
-			if (line.trim().isEmpty() && i>lineIndex) {
-				if (lastLine.matches(CLOSING_BRACE_REGEX)) {
-//					System.out.println("found "+line+" at "+i);
-					end = i;
-					break;
-				}
-			} else {
-				if (i+1==linesOfCode.size()) {
-					if (line.matches(CLOSING_BRACE_REGEX) && lastLine.matches(CLOSING_BRACE_REGEX)) {
-//						System.out.println("found EOF '"+line+"' at "+i);
-						end = i;
-					}
-				}
-			}
-		}
+		Preconditions.checkArgument(lineIndex < linesOfCode.size(),"line number(%s) > lines of code(%s)", calledMethod.line().lineNumber(), linesOfCode.size());
 
-		Preconditions.checkArgument(end!=-1,"could not find end of method declaration for "+calledMethod.line().methodName());
+		SourceOutline.Method method = outline.methodAt(calledMethod.line().lineNumber(), calledMethod.line().methodName())
+			.orElseThrow(() -> new IllegalArgumentException("could not find method declaration for "+calledMethod.line().methodName()));
 
 		List<String> lines = new ArrayList<>();
-		lines.addAll(linesOfCode.subList(start, lineIndex));
-		lines.addAll(linesOfCode.subList(lineIndex+1,end+1));
-		
-		return blockOf(lines, 0, lines.size());
+		lines.addAll(linesOfCode.subList(method.declarationLineNumber() - 1, lineIndex));
+		lines.addAll(linesOfCode.subList(lineIndex + 1, method.endLineNumber()));
+
+		return SourceBlock.of(lines);
 	}
 
-	private static String formatBlocks(List<Block> blocks) {
-		return blocks.stream().map(block -> block.content).collect(Collectors.joining("\n...\n\n"));
+	private static Fragment formatBlocks(List<Block> blocks) {
+		return Fragment.join(blocks.stream().map(block -> block.content.get()).collect(Collectors.toList()), "\n...\n\n");
 	}
 
-	private static Map<String, List<Block>> recordingsByMethod(Map<String, List<HasLine>> methodNames, List<String> linesOfCode) {
+	private static Map<String, List<Block>> recordingsByMethod(Map<String, Markers> markersByMethod, List<String> linesOfCode) {
 		Map<String, List<Block>> ret=new LinkedHashMap<>();
-		for (String key : methodNames.keySet()) {
-			ret.put(key, recordings(methodNames.get(key), linesOfCode));
-		}
+		markersByMethod.forEach((method, markers) -> ret.put(method, recordings(markers, linesOfCode)));
 		return ret;
 	}
 
-	private static List<Block> recordings(List<HasLine> list, List<String> linesOfCode) {
+	private static List<Block> recordings(Markers markers, List<String> linesOfCode) {
 		List<Block> ret=new ArrayList<>();
 
-		List<HasLine> sortedLineNumbers = list.stream()
-			.sorted(Comparator.comparingInt(a -> a.line().lineNumber()))
-			.collect(Collectors.toList());
+		Preconditions.checkArgument(markers.size() % 2 == 0, "odd number of markers: %s", markers);
 
-		Preconditions.checkArgument(sortedLineNumbers.size() % 2 == 0, "odd number of markers: %s", sortedLineNumbers);
-
-		Start lastStart=null;
-		for (HasLine line : sortedLineNumbers) {
-			if (line instanceof Start) {
-				Preconditions.checkArgument(lastStart==null, "start after start: %s - %s",lastStart, line);
-				lastStart=(Start) line;
+		int lastStart=-1;
+		for (int index : markers.inLineOrder()) {
+			if (markers.isStart(index)) {
+				int start=lastStart;
+				Preconditions.checkArgument(lastStart==-1, "start after start: %s - %s", Preconditions.lazy(() -> markers.asLine(start)), Preconditions.lazy(() -> markers.asLine(index)));
+				lastStart=index;
 			} else {
-				if (line instanceof End) {
-					Preconditions.checkNotNull(lastStart, "end but no start: %s", line);
-					ret.add(new Block(
-						blockOf(linesOfCode, lastStart.line().lineNumber(), line.line().lineNumber()),
-						lastStart.label()
-					));
-					lastStart=null;
-				} else {
-					Preconditions.checkArgument(false, "hmm... should not happen: %s",line);
-				}
+				Preconditions.checkArgument(lastStart!=-1, "end but no start: %s", Preconditions.lazy(() -> markers.asLine(index)));
+				ret.add(new Block(
+					linesOfCode.subList(markers.lineNumber(lastStart), markers.lineNumber(index)-1),
+					markers.label(lastStart)
+				));
+				lastStart=-1;
 			}
 		}
 
 		return ret;
 	}
 
-	private static String blockOf(List<String> linesOfCode, int startLineNumber, int endLineNumber) {
-		return shiftLeft(linesOfCode.subList(startLineNumber, endLineNumber-1))
-				.stream()
-				.collect(Collectors.joining("\n"));
-	}
-
-	private static List<String> shiftLeft(List<String> subList) {
-//		System.out.println("shiftLeft: "+subList);
-
-		Optional<Integer> minWhitespaces = subList.stream()
-			.filter(line -> !line.trim().isEmpty())
-			.map(line -> WHITESPACES.matcher(line))
-			.filter(matcher -> matcher.find())
-			.map(matcher -> matcher.end())
-			.min(Comparator.naturalOrder());
-
-		if (minWhitespaces.isPresent()) {
-			int offset=minWhitespaces.get();
-			return subList.stream()
-					.map(line -> line.length()<offset ? "" : line.substring(offset))
-					.collect(Collectors.toList());
-		}
-
-
-		return subList;
-	}
-
 	private static class Block {
-		final String content;
+		final Supplier<Fragment> content;
 		final Optional<String> label;
 
-		Block(String content, Optional<String> label) {
-			this.content = content;
+		Block(List<String> lines, Optional<String> label) {
+			this.content = once(() -> SourceBlock.of(lines));
 			this.label = label;
 		}
 	}
+
+	private static <T> Supplier<T> once(Supplier<T> supplier) {
+		return new Supplier<T>() {
+			private T value;
+
+			@Override
+			public T get() {
+				if (value == null) {
+					value = supplier.get();
+				}
+				return value;
+			}
+		};
+	}
 }
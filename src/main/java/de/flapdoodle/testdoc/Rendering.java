@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.function.Function;
+
+/**
+ * rendered document, which can be streamed into a writer or channel
+ * without creating the whole document as string
+ */
+interface Rendering {
+
+	String asString();
+
+	void writeTo(Writer writer) throws IOException;
+
+	void writeTo(WritableByteChannel channel, Charset charset) throws IOException;
+
+	static Rendering of(Template template, Function<String, String> variableLookUp) {
+		return of(template, Template.bind(template, variableLookUp));
+	}
+
+	/**
+	 * @param slots replacements in slot order of the compiled template
+	 */
+	static Rendering of(Template template, Fragment[] slots) {
+		return new Rendering() {
+			@Override
+			public String asString() {
+				return template.compiled().render(slots);
+			}
+
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				template.compiled().renderTo(slots, writer);
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel, Charset charset) throws IOException {
+				template.compiled().renderTo(slots, channel, charset);
+			}
+		};
+	}
+
+	static Rendering of(String rendered) {
+		return new Rendering() {
+			@Override
+			public String asString() {
+				return rendered;
+			}
+
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				writer.write(rendered);
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel, Charset charset) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(rendered.getBytes(charset));
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		};
+	}
+}
@@ -17,28 +17,46 @@
 package de.flapdoodle.testdoc;
 
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public enum ReplacementPattern {
 	/**
 	 * pattern is ${name}
 	 */
-	DEFAULT("\\$\\{", "\\}"),
+	DEFAULT(Delimiters.of("${", "}")),
 
 	/**
 	 * pattern is {{name}}
 	 */
-	DOUBLE_CURLY("\\{\\{", "\\}\\}")
+	DOUBLE_CURLY(Delimiters.of("{{", "}}"))
 
 	;
 
-	private final Pattern pattern;
+	private final Delimiters delimiters;
 
-	ReplacementPattern(String start, String end) {
-		this.pattern = Pattern.compile("(?<all>" + start + "(?<label>[a-zA-Z0-9\\-_:\\.]+)" + end + ")");
+	ReplacementPattern(Delimiters delimiters) {
+		this.delimiters = delimiters;
 	}
-	
+
+	public Delimiters delimiters() {
+		return delimiters;
+	}
+
 	public Matcher matcher(String source) {
-		return pattern.matcher(source);
+		return delimiters.matcher(source);
+	}
+
+	/**
+	 * @return custom delimiters, label made of {@link Delimiters#LABEL_CHARACTERS}
+	 */
+	public static Delimiters of(String open, String close) {
+		return Delimiters.of(open, close);
+	}
+
+	/**
+	 * @param labelCharacters all chars allowed in a label
+	 * @return custom delimiters
+	 */
+	public static Delimiters of(String open, String close, String labelCharacters) {
+		return Delimiters.of(open, close, labelCharacters);
 	}
 }
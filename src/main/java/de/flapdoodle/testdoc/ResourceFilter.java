@@ -17,39 +17,61 @@
 package de.flapdoodle.testdoc;
 
 import java.util.function.Function;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * filters the content of a resource, {@link LineFilter}s are applied line by line
+ * while the resource is read
+ */
 public interface ResourceFilter extends Function<String, String>{
 	
+	/**
+	 * @deprecated line filters split lines without regex
+	 */
+	@Deprecated
 	Pattern NEW_LINE= Pattern.compile("(?<newline>\\n\\r?)");
 
+	/**
+	 * consecutive {@link LineFilter}s are fused, so they need only one pass
+	 */
 	static ResourceFilter join(ResourceFilter... filters) {
-		return src -> {
-			String ret=src;
-			for (ResourceFilter f : filters) {
-				ret=f.apply(ret);
-			}
-			return ret;
-		};
+		return LinePipeline.join(filters);
 	}
 	
-	static ResourceFilter indent(String beforeEachLine) {
-		return src -> {
-			Matcher matcher = NEW_LINE.matcher(src);
-			int lastStart=0;
-			StringBuilder sb=new StringBuilder();
-			while (matcher.find()) {
-				sb.append(beforeEachLine);
-				sb.append(src.substring(lastStart, matcher.start()));
-				sb.append(matcher.group("newline"));
-				lastStart=matcher.end();
-			}
-			if (lastStart<src.length()) {
-				sb.append(beforeEachLine);
-				sb.append(src.substring(lastStart));
-			}
-			return sb.toString();
-		};
+	static LineFilter indent(String beforeEachLine) {
+		return next -> new LinePipeline.Indent(next, beforeEachLine);
+	}
+
+	/**
+	 * removes the indentation all non blank lines have in common
+	 */
+	static LineFilter dedent() {
+		return LinePipeline.CommonDedent::new;
+	}
+
+	/**
+	 * removes up to {@code columns} leading whitespace characters from each line
+	 */
+	static LineFilter dedent(int columns) {
+		Preconditions.checkArgument(columns >= 0, "columns < 0: %s", columns);
+		return next -> new LinePipeline.Dedent(next, columns);
+	}
+
+	/**
+	 * @param from first line, starting with 1
+	 * @param to last line, included
+	 */
+	static LineFilter lines(int from, int to) {
+		Preconditions.checkArgument(from >= 1, "from < 1: %s", from);
+		Preconditions.checkArgument(to >= from, "to < from: %s < %s", to, from);
+		return next -> new LinePipeline.LineRange(next, from, to);
+	}
+
+	/**
+	 * replaces each occurrence of literal within a line
+	 */
+	static LineFilter replace(String literal, String replacement) {
+		Preconditions.checkArgument(!literal.isEmpty(), "literal is empty");
+		return next -> new LinePipeline.Replace(next, literal, replacement);
 	}
 }
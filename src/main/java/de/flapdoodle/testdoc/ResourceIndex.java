@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * locations of classpath resources for each classloader, resources which
+ * could not be found are remembered for a while, because a directory on the
+ * classpath may get them later
+ */
+final class ResourceIndex {
+
+	private static final Map<ClassLoader, LookupCache<String, URL>> LOCATIONS = new WeakHashMap<>();
+	private static final LookupCache<String, URL> BOOTSTRAP_LOCATIONS = new LookupCache<>();
+
+	private static final AtomicLong requests = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private ResourceIndex() {
+		// no instance
+	}
+
+	/**
+	 * same as {@link Class#getResource(String)}
+	 * @return location of resource or empty if there is no such resource
+	 */
+	static Optional<URL> urlOf(Class<?> clazz, String resourceName) {
+		String name = absoluteName(clazz, resourceName);
+		ClassLoader classLoader = clazz.getClassLoader();
+		requests.incrementAndGet();
+		return locationsOf(classLoader).get(name, key -> {
+			misses.incrementAndGet();
+			return Optional.ofNullable(classLoader != null
+				? classLoader.getResource(key)
+				: ClassLoader.getSystemResource(key));
+		});
+	}
+
+	private static LookupCache<String, URL> locationsOf(ClassLoader classLoader) {
+		if (classLoader == null) {
+			return BOOTSTRAP_LOCATIONS;
+		}
+		synchronized (LOCATIONS) {
+			return LOCATIONS.computeIfAbsent(classLoader, loader -> new LookupCache<>());
+		}
+	}
+
+	static String absoluteName(Class<?> clazz, String resourceName) {
+		if (resourceName.startsWith("/")) {
+			return resourceName.substring(1);
+		}
+		Class<?> base = clazz;
+		while (base.isArray()) {
+			base = base.getComponentType();
+		}
+		String className = base.getName();
+		int lastDot = className.lastIndexOf('.');
+		return lastDot != -1
+			? className.substring(0, lastDot).replace('.', '/') + "/" + resourceName
+			: resourceName;
+	}
+
+	static long hits() {
+		return requests.get() - misses.get();
+	}
+
+	static long misses() {
+		return misses.get();
+	}
+
+	static void clear() {
+		synchronized (LOCATIONS) {
+			LOCATIONS.clear();
+		}
+		BOOTSTRAP_LOCATIONS.clear();
+	}
+}
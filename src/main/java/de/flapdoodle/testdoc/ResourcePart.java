@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import de.flapdoodle.testdoc.LineFilter.Lines;
+
+/**
+ * the part of a resource to include, only this part is read if possible:
+ * line ranges stop reading after the last line, tail and byte ranges seek
+ * if the resource is a file, tagged regions come from a cached index
+ */
+public abstract class ResourcePart {
+
+	private static final int SEEK_BUFFER_SIZE = 8 * 1024;
+
+	ResourcePart() {
+		// only the ones below
+	}
+
+	abstract void read(URL url, Charset charset, Lines lines) throws IOException;
+
+	/**
+	 * @param from first line, starting with 1
+	 * @param to last line, included
+	 */
+	public static ResourcePart lines(int from, int to) {
+		Preconditions.checkArgument(from >= 1, "from < 1: %s", from);
+		Preconditions.checkArgument(to >= from, "to < from: %s < %s", to, from);
+		return new ResourcePart() {
+			@Override
+			void read(URL url, Charset charset, Lines lines) throws IOException {
+				try (BufferedReader reader = readerOf(url.openStream(), charset)) {
+					LinePipeline.read(reader, new LinePipeline.LineRange(lines, from, to));
+				}
+			}
+		};
+	}
+
+	public static ResourcePart head(int lines) {
+		Preconditions.checkArgument(lines >= 1, "lines < 1: %s", lines);
+		return lines(1, lines);
+	}
+
+	public static ResourcePart tail(int lines) {
+		Preconditions.checkArgument(lines >= 1, "lines < 1: %s", lines);
+		return new ResourcePart() {
+			@Override
+			void read(URL url, Charset charset, Lines target) throws IOException {
+				Optional<Path> file = fileOf(url);
+				if (file.isPresent() && lineBreaksAreSingleBytes(charset)) {
+					try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+						channel.position(startOfLastLines(channel, lines));
+						try (BufferedReader reader = readerOf(Channels.newInputStream(channel), charset)) {
+							LinePipeline.read(reader, target);
+						}
+					}
+				} else {
+					try (BufferedReader reader = readerOf(url.openStream(), charset)) {
+						LinePipeline.read(reader, new LinePipeline.Tail(target, lines));
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * a byte range is decoded on its own, a character cut at one of its ends is replaced
+	 * @param offset first byte, starting with 0
+	 * @param length number of bytes
+	 */
+	public static ResourcePart bytes(long offset, int length) {
+		Preconditions.checkArgument(offset >= 0, "offset < 0: %s", offset);
+		Preconditions.checkArgument(length >= 0, "length < 0: %s", length);
+		return new ResourcePart() {
+			@Override
+			void read(URL url, Charset charset, Lines lines) throws IOException {
+				String content;
+				Optional<Path> file = fileOf(url);
+				if (file.isPresent()) {
+					try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+						// a range past the end of the file is cut
+						ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, Math.max(0, channel.size() - offset)));
+						int read = readFully(channel, buffer, offset);
+						content = new String(buffer.array(), 0, read, charset);
+					}
+				} else {
+					try (InputStream input = url.openStream()) {
+						content = new String(skip(input, offset) ? readAtMost(input, length) : new byte[0], charset);
+					}
+				}
+				LinePipeline.read(new BufferedReader(new StringReader(content)), lines);
+			}
+		};
+	}
+
+	/**
+	 * the lines between {@code tag::name[]} and {@code end::name[]}, the regions are
+	 * indexed once for each file
+	 */
+	public static ResourcePart tagged(String name) {
+		return new ResourcePart() {
+			@Override
+			void read(URL url, Charset charset, Lines lines) {
+				List<String> region = Resources.regionOf(Resources.linesOf(url), name, url);
+				for (int i = 0; i < region.size(); i++) {
+					if (!lines.line(region.get(i), i + 1 < region.size() ? "\n" : "")) {
+						break;
+					}
+				}
+				lines.end();
+			}
+		};
+	}
+
+	private static BufferedReader readerOf(InputStream input, Charset charset) {
+		return new BufferedReader(new InputStreamReader(input, charset));
+	}
+
+	private static Optional<Path> fileOf(URL url) {
+		if ("file".equals(url.getProtocol())) {
+			try {
+				return Optional.of(Paths.get(url.toURI()));
+			}
+			catch (URISyntaxException | RuntimeException e) {
+				// fall back to stream
+			}
+		}
+		return Optional.empty();
+	}
+
+	private static boolean lineBreaksAreSingleBytes(Charset charset) {
+		return StandardCharsets.UTF_8.equals(charset)
+			|| StandardCharsets.US_ASCII.equals(charset)
+			|| StandardCharsets.ISO_8859_1.equals(charset);
+	}
+
+	/**
+	 * searches backwards for the line breaks like BufferedReader would split, a line break
+	 * at the end does not start another line
+	 */
+	static long startOfLastLines(FileChannel channel, int lines) throws IOException {
+		long size = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(SEEK_BUFFER_SIZE);
+		long position = size;
+		byte after = 0;
+		int found = 0;
+		while (position > 0) {
+			int length = (int) Math.min(buffer.capacity(), position);
+			position -= length;
+			buffer.clear();
+			buffer.limit(length);
+			readFully(channel, buffer, position);
+			for (int i = length - 1; i >= 0; i--) {
+				byte current = buffer.get(i);
+				boolean lineBreak = current == '\n' || (current == '\r' && after != '\n');
+				after = current;
+				long lineStart = position + i + 1;
+				if (lineBreak && lineStart < size) {
+					found++;
+					if (found == lines) {
+						return lineStart;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int start = buffer.position();
+		while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position() - start) >= 0) {
+			// read until full or eof
+		}
+		return buffer.position() - start;
+	}
+
+	private static boolean skip(InputStream input, long count) throws IOException {
+		long left = count;
+		while (left > 0) {
+			long skipped = input.skip(left);
+			if (skipped <= 0) {
+				if (input.read() < 0) {
+					return false;
+				}
+				skipped = 1;
+			}
+			left -= skipped;
+		}
+		return true;
+	}
+
+	// the result grows with what is read, a large length does not allocate a large buffer
+	private static byte[] readAtMost(InputStream input, int length) throws IOException {
+		ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		byte[] buffer = new byte[Math.min(length, SEEK_BUFFER_SIZE)];
+		int left = length;
+		int read;
+		while (left > 0 && (read = input.read(buffer, 0, Math.min(left, buffer.length))) >= 0) {
+			ret.write(buffer, 0, read);
+			left -= read;
+		}
+		return ret.toByteArray();
+	}
+}
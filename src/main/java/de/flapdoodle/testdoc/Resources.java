@@ -17,7 +17,8 @@
 package de.flapdoodle.testdoc;
 
 import java.io.*;
-import java.nio.file.Path;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.function.Function;
@@ -25,59 +26,156 @@ import java.util.stream.Collectors;
 
 abstract class Resources {
 
+	private static final String SOURCE_CACHE_MAX_CHARS_PROPERTY = "de.flapdoodle.testdoc.sourceCache.maxChars";
+
+	static final SourceFileCache SOURCE_FILES = new SourceFileCache(
+		Configuration.getLong(SOURCE_CACHE_MAX_CHARS_PROPERTY).orElse(16L * 1024 * 1024),
+		(path, tabSize) -> tabToSpaces(TextReader.read(path).lines(), tabSize.asSpaces())
+	);
+
+	/**
+	 * resources keep their tabs, the tab size is only part of the key
+	 */
+	private static final TabSize KEEP_TABS = TabSize.spaces(0);
+
+	static final SourceFileCache RESOURCE_FILES = new SourceFileCache(
+		Configuration.getLong(SOURCE_CACHE_MAX_CHARS_PROPERTY).orElse(16L * 1024 * 1024),
+		(path, tabSize) -> TextReader.read(path).lines()
+	);
+
 	private Resources() {
 		// no instance
 	}
 	
 	public static Optional<String> resource(Class<?> clazz, String resourceName) {
-		return Optional.ofNullable(clazz.getResourceAsStream(resourceName))
-			.map(is -> read(() -> is));
+		return ResourceIndex.urlOf(clazz, resourceName)
+			.map(Resources::read)
+			.map(Text::joinedWithNewLine);
+	}
+
+	/**
+	 * streams the resource through the filter, stops reading as soon as the filter is done
+	 */
+	public static Optional<String> resource(Class<?> clazz, String resourceName, LineFilter filter) {
+		return ResourceIndex.urlOf(clazz, resourceName)
+			.map(url -> read(url::openStream, reader -> {
+				StringBuilder sb = new StringBuilder();
+				LinePipeline.read(reader, filter.to(LinePipeline.appendTo(sb)));
+				return sb.toString();
+			}));
+	}
+
+	/**
+	 * reads only the part of the resource and streams it through the filter
+	 */
+	public static Optional<String> resource(Class<?> clazz, String resourceName, ResourcePart part, LineFilter filter) {
+		return ResourceIndex.urlOf(clazz, resourceName)
+			.map(url -> {
+				StringBuilder sb = new StringBuilder();
+				try {
+					part.read(url, TextReader.charset(), filter.to(LinePipeline.appendTo(sb)));
+				}
+				catch (IOException iox) {
+					throw new RuntimeException("could not read " + url, iox);
+				}
+				return sb.toString();
+			});
+	}
+
+	private static Text read(URL url) {
+		if ("file".equals(url.getProtocol())) {
+			try {
+				return TextReader.read(Paths.get(url.toURI()));
+			}
+			catch (URISyntaxException | RuntimeException e) {
+				// fall back to stream
+			}
+		}
+		return readText(url::openStream);
 	}
 	
 	public static Optional<List<String>> sourceCodeOf(Class<?> clazz, TabSize tabSize, Includes...options) {
-		List<Path> codeRoots = sourceCodeRoots();
-		Preconditions.checkArgument(!codeRoots.isEmpty(), "no sourceCodeRoots found");
-		for (Path codeRoot : codeRoots) {
-			Path resolved = codeRoot.resolve(asPath(clazz));
-			if (isFile(resolved)) {
-				List<String> tabToSpaces = tabToSpaces(readLines(() -> new FileInputStream(resolved.toFile())), tabSize.asSpaces());
-				return Optional.of(applyOptions(tabToSpaces, options));
+		SourceRoots sourceRoots = SourceRoots.instance();
+		Preconditions.checkArgument(!sourceRoots.roots().isEmpty(), "no sourceCodeRoots found");
+		return sourceRoots.sourceOf(clazz, sourceNameOf(clazz))
+			.flatMap(path -> SOURCE_FILES.linesOf(path, tabSize))
+			.map(lines -> applyOptions(SourceLines.of(lines), options));
+	}
+
+	/**
+	 * @return lines of the tagged region, only {@link Includes#Trim} is applied
+	 */
+	public static Optional<List<String>> sourceCodeOf(Class<?> clazz, TabSize tabSize, String tag, Includes...options) {
+		SourceRoots sourceRoots = SourceRoots.instance();
+		Preconditions.checkArgument(!sourceRoots.roots().isEmpty(), "no sourceCodeRoots found");
+		return sourceRoots.sourceOf(clazz, sourceNameOf(clazz))
+			.flatMap(path -> SOURCE_FILES.linesOf(path, tabSize))
+			.map(lines -> regionOf(SourceLines.of(lines), tag, clazz, options));
+	}
+
+	static List<String> regionOf(SourceLines lines, String tag, Object source, Includes... options) {
+		Optional<List<String>> region = lines.region(tag);
+		Preconditions.checkArgument(region.isPresent(), "could not find region %s in %s", tag, source);
+		return Arrays.asList(options).contains(Includes.Trim) && !region.get().isEmpty()
+			? trimBlock(region.get())
+			: region.get();
+	}
+
+	/**
+	 * lines of a resource, cached if the resource is a file
+	 */
+	static SourceLines linesOf(URL url) {
+		if ("file".equals(url.getProtocol())) {
+			try {
+				Optional<List<String>> lines = RESOURCE_FILES.linesOf(Paths.get(url.toURI()), KEEP_TABS);
+				if (lines.isPresent()) {
+					return SourceLines.of(lines.get());
+				}
+			}
+			catch (URISyntaxException | RuntimeException e) {
+				// fall back to stream
 			}
 		}
-		return Optional.empty();
+		return SourceLines.of(readText(url::openStream).lines());
 	}
 
-	private static List<String> applyOptions(List<String> lines, Includes... options) {
+	private static List<String> applyOptions(SourceLines lines, Includes... options) {
+		List<String> ret = lines;
 		if (options.length>0) {
 			EnumSet<Includes> optionsAsSet = EnumSet.copyOf(Arrays.asList(options));
-			if (optionsAsSet.contains(Includes.WithoutPackage)) {
-				lines = stripPackage(lines);
-			}
-			if (optionsAsSet.contains(Includes.WithoutImports)) {
-				lines = stripImports(lines);
-			}
+			SourceOutline outline = lines.outline();
+			int firstLine = optionsAsSet.contains(Includes.WithoutPackage)
+				? outline.packageEndLineNumber()
+				: 0;
+			ret = optionsAsSet.contains(Includes.WithoutImports)
+				? withoutImports(lines, outline, firstLine)
+				: lines.subList(firstLine, lines.size());
 			if (optionsAsSet.contains(Includes.Trim)) {
-				lines = trimBlock(lines);
+				ret = trimBlock(ret);
 			}
 		}
-		return lines;
+		return ret;
 	}
 
-	private static List<String> stripImports(List<String> lines) {
-		return lines.stream()
-				.filter(l -> !l.startsWith("import"))
-				.collect(Collectors.toList());
+	private static List<String> withoutImports(List<String> lines, SourceOutline outline, int firstLine) {
+		List<String> ret = new ArrayList<>(lines.size() - firstLine);
+		for (int i = firstLine; i < lines.size(); i++) {
+			if (!outline.isImport(i + 1)) {
+				ret.add(lines.get(i));
+			}
+		}
+		return ret;
 	}
 
 	private static List<String> trimBlock(List<String> lines) {
 		int firstContentLine=0;
-		int lastContentLine=lines.size();
 		for (int i=0;i<lines.size();i++) {
 			if (!lines.get(i).trim().isEmpty()) {
 				firstContentLine=i;
 				break;
 			}
 		}
+		int lastContentLine=firstContentLine;
 		for (int i=lines.size()-1;i>firstContentLine;i--) {
 			if (!lines.get(i).trim().isEmpty()) {
 				lastContentLine=i;
@@ -87,53 +185,20 @@ abstract class Resources {
 		return lines.subList(firstContentLine, lastContentLine+1);
 	}
 
-	private static List<String> stripPackage(List<String> lines) {
-		for (int i=0;i<lines.size();i++) {
-			if (lines.get(i).startsWith("package")) {
-				return lines.subList(i+1, lines.size());
-			}
-		}
-		return lines;
-	}
-
 	public static List<String> tabToSpaces(List<String> src, String tabSize) {
 		return src.stream()
 				.map(s -> s.replace("\t", tabSize))
 				.collect(Collectors.toList());
 	}
 
-	private static Path asPath(Class<?> clazz) {
+	private static String sourceNameOf(Class<?> clazz) {
 		Preconditions.checkArgument(!clazz.isAnonymousClass(), "class %s is anonymous", clazz); 
-		String packageAsDir = clazz.getPackage().getName().replace('.', File.separatorChar);
-		return Paths.get(packageAsDir).resolve(clazz.getSimpleName()+".java");
-	}
-	
-	private static List<Path> sourceCodeRoots() {
-		Path mayBeMavenRoot = Paths.get("").toAbsolutePath();
-		Path testSources = mayBeMavenRoot.resolve(Paths.get("src","test","java"));
-		Path sources = mayBeMavenRoot.resolve(Paths.get("src","main","java"));
-		List<Path> ret=new ArrayList<>();
-		if (isDir(testSources)) {
-			ret.add(testSources);
-		}
-		if (isDir(sources)) {
-			ret.add(sources);
-		}
-		return ret;
-	}
-	
-	private static boolean isDir(Path resolved) {
-		File asFile = resolved.toFile();
-		return asFile.isDirectory() && asFile.exists();
-	}
-
-	private static boolean isFile(Path resolved) {
-		File asFile = resolved.toFile();
-		return asFile.isFile() && asFile.exists();
+		String packageAsDir = clazz.getPackage().getName().replace('.', '/');
+		return packageAsDir + "/" + clazz.getSimpleName() + ".java";
 	}
 	
 	public static String read(ThrowingSupplier<InputStream,?> input) {
-		return read(input, buffer -> buffer.lines().collect(Collectors.joining("\n")));
+		return readText(input).joinedWithNewLine();
 	}
 	
 	public static String joinedWithNewLine(Collection<String> lines) {
@@ -141,12 +206,12 @@ abstract class Resources {
 	}
 	
 	public static List<String> readLines(ThrowingSupplier<InputStream,?> input) {
-		return read(input, buffer -> buffer.lines().collect(Collectors.toList()));
+		return readText(input).lines();
 	}
 	
 	public static <T,E extends Exception> T read(ThrowingSupplier<InputStream,E> input, Function<BufferedReader, T> bufferMapping) {
 		try (InputStream is = input.get()) {
-			try (BufferedReader buffer = new BufferedReader(new InputStreamReader(is))) {
+			try (BufferedReader buffer = new BufferedReader(new InputStreamReader(is, TextReader.charset()))) {
 				return bufferMapping.apply(buffer);
 			}
 		}
@@ -155,5 +220,12 @@ abstract class Resources {
 		}
 	}
 
-
+	private static <E extends Exception> Text readText(ThrowingSupplier<InputStream,E> input) {
+		try (InputStream is = input.get()) {
+			return TextReader.read(is);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
 }
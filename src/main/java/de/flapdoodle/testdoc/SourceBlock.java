@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * lines of source code joined with newline, the common indent is stripped
+ * while writing, the lines are not copied
+ */
+final class SourceBlock implements Fragment {
+
+	private final List<String> lines;
+	private final int indent;
+
+	private SourceBlock(List<String> lines, int indent) {
+		this.lines = lines;
+		this.indent = indent;
+	}
+
+	static SourceBlock of(List<String> lines) {
+		int indent = Integer.MAX_VALUE;
+		for (String line : lines) {
+			if (!line.trim().isEmpty()) {
+				indent = Math.min(indent, indentOf(line));
+			}
+		}
+		return new SourceBlock(lines, indent == Integer.MAX_VALUE ? 0 : indent);
+	}
+
+	@Override
+	public void writeTo(Chunks chunks) throws IOException {
+		for (int i = 0; i < lines.size(); i++) {
+			if (i > 0) {
+				chunks.write("\n", 0, 1);
+			}
+			String line = lines.get(i);
+			if (line.length() > indent) {
+				chunks.write(line, indent, line.length());
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return asString();
+	}
+
+	private static int indentOf(String line) {
+		int ret = 0;
+		while (ret < line.length() && isWhitespace(line.charAt(ret))) {
+			ret++;
+		}
+		return ret;
+	}
+
+	// same as \s in a regex
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * tab expanded source files, shared by all recordings, limited by the
+ * number of cached chars, least recently used files are evicted first
+ */
+final class SourceFileCache {
+
+	private final long maxChars;
+	private final BiFunction<Path, TabSize, List<String>> loader;
+
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedChars = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	SourceFileCache(long maxChars, BiFunction<Path, TabSize, List<String>> loader) {
+		Preconditions.checkArgument(maxChars >= 0, "invalid maxChars: %s", maxChars);
+		this.maxChars = maxChars;
+		this.loader = loader;
+	}
+
+	/**
+	 * @return lines of file or empty if there is no such file
+	 */
+	Optional<List<String>> linesOf(Path path, TabSize tabSize) {
+		Optional<BasicFileAttributes> attributes = attributesOf(path);
+		if (!attributes.isPresent() || !attributes.get().isRegularFile()) {
+			return Optional.empty();
+		}
+
+		Key key = new Key(path, tabSize.spaces());
+		FileTime lastModified = attributes.get().lastModifiedTime();
+		long fileSize = attributes.get().size();
+
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.lastModified.equals(lastModified) && entry.fileSize == fileSize) {
+				hits.incrementAndGet();
+				return Optional.of(entry.lines);
+			}
+		}
+
+		misses.incrementAndGet();
+		List<String> lines = SourceLines.of(loader.apply(path, tabSize));
+		put(key, new Entry(lastModified, fileSize, lines));
+		return Optional.of(lines);
+	}
+
+	private synchronized void put(Key key, Entry entry) {
+		Entry old = entries.remove(key);
+		if (old != null) {
+			cachedChars -= old.chars;
+		}
+		if (entry.chars > maxChars) {
+			return;
+		}
+		entries.put(key, entry);
+		cachedChars += entry.chars;
+
+		Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+		while (cachedChars > maxChars && leastRecentlyUsed.hasNext()) {
+			cachedChars -= leastRecentlyUsed.next().chars;
+			leastRecentlyUsed.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	long hits() {
+		return hits.get();
+	}
+
+	long misses() {
+		return misses.get();
+	}
+
+	long evictions() {
+		return evictions.get();
+	}
+
+	synchronized long cachedChars() {
+		return cachedChars;
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		cachedChars = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "SourceFileCache{hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + ", cachedChars=" + cachedChars() + "}";
+	}
+
+	private static Optional<BasicFileAttributes> attributesOf(Path path) {
+		try {
+			return Optional.of(Files.readAttributes(path, BasicFileAttributes.class));
+		}
+		catch (NoSuchFileException nsx) {
+			return Optional.empty();
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not read attributes of " + path, iox);
+		}
+	}
+
+	private static final class Key {
+		private final Path path;
+		private final int tabSpaces;
+
+		Key(Path path, int tabSpaces) {
+			this.path = path;
+			this.tabSpaces = tabSpaces;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key other = (Key) o;
+			return tabSpaces == other.tabSpaces && path.equals(other.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, tabSpaces);
+		}
+	}
+
+	private static final class Entry {
+		private final FileTime lastModified;
+		private final long fileSize;
+		private final List<String> lines;
+		private final long chars;
+
+		Entry(FileTime lastModified, long fileSize, List<String> lines) {
+			this.lastModified = lastModified;
+			this.fileSize = fileSize;
+			this.lines = lines;
+			this.chars = lines.stream().mapToLong(line -> line.length() + 1).sum();
+		}
+	}
+}
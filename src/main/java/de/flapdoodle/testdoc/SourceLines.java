@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * unmodifiable lines of a source file, the outline and the tagged regions are
+ * shared by everyone using the same lines
+ */
+final class SourceLines extends AbstractList<String> implements RandomAccess {
+
+	private final List<String> lines;
+	private final SourceOutline outline;
+	private volatile SourceRegions regions;
+
+	private SourceLines(List<String> lines) {
+		this.lines = lines;
+		this.outline = SourceOutline.of(lines);
+	}
+
+	static SourceLines of(List<String> lines) {
+		return lines instanceof SourceLines
+			? (SourceLines) lines
+			: new SourceLines(Collections.unmodifiableList(new ArrayList<>(lines)));
+	}
+
+	SourceOutline outline() {
+		return outline;
+	}
+
+	SourceRegions regions() {
+		SourceRegions ret = regions;
+		if (ret == null) {
+			ret = SourceRegions.of(lines);
+			regions = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return lines of the tagged region or empty if there is no such region
+	 */
+	Optional<List<String>> region(String name) {
+		return regions().region(lines, name);
+	}
+
+	@Override
+	public String get(int index) {
+		return lines.get(index);
+	}
+
+	@Override
+	public int size() {
+		return lines.size();
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * package declaration, imports and method declarations of a source file,
+ * found in one pass over the tokens, computed on first use
+ */
+final class SourceOutline {
+
+	private static final Set<String> NOT_A_METHOD = new HashSet<>(Arrays.asList(
+		"if", "for", "while", "switch", "catch", "synchronized", "try", "return", "new", "throw", "else", "do", "assert"
+	));
+
+	// change if lexer or index change
+	private static final int CACHE_VERSION = 1;
+
+	private final List<String> lines;
+	private final Optional<DiskCache> diskCache;
+	private volatile Index index;
+
+	private SourceOutline(List<String> lines, Optional<DiskCache> diskCache) {
+		this.lines = lines;
+		this.diskCache = diskCache;
+	}
+
+	static SourceOutline of(List<String> lines) {
+		return of(lines, DiskCache.instance());
+	}
+
+	static SourceOutline of(List<String> lines, Optional<DiskCache> diskCache) {
+		return new SourceOutline(lines, diskCache);
+	}
+
+	private Index index() {
+		Index ret = index;
+		if (ret == null) {
+			ret = diskCache
+				.map(cache -> cache.computeIfAbsent("outlines", CACHE_VERSION, ContentHash.create().add(lines).asHex(),
+					Index.codec(lines.size()), () -> Index.of(JavaLexer.tokenize(lines))))
+				.orElseGet(() -> Index.of(JavaLexer.tokenize(lines)));
+			index = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return line number of the end of the package declaration, 0 if there is none
+	 */
+	int packageEndLineNumber() {
+		return index().packageEndLineNumber;
+	}
+
+	/**
+	 * @return true if this line is part of an import declaration
+	 */
+	boolean isImport(int lineNumber) {
+		return index().importLines.get(lineNumber);
+	}
+
+	List<Method> methods() {
+		return index().methods;
+	}
+
+	private static final class Index {
+		private final int packageEndLineNumber;
+		private final BitSet importLines;
+		// sorted by declaration line
+		private final List<Method> methods;
+
+		private Index(int packageEndLineNumber, BitSet importLines, List<Method> methods) {
+			this.packageEndLineNumber = packageEndLineNumber;
+			this.importLines = importLines;
+			this.methods = methods;
+		}
+
+		private static Index of(JavaLexer tokens) {
+			int packageEndLineNumber = 0;
+			BitSet importLines = new BitSet();
+
+			int depth = 0;
+			boolean startOfStatement = true;
+			for (int i = 0; i < tokens.size(); i++) {
+				if (tokens.kind(i).isComment()) {
+					continue;
+				}
+				if (depth == 0 && startOfStatement) {
+					if (tokens.isIdentifier(i, "package")) {
+						i = endOfStatement(tokens, i);
+						packageEndLineNumber = tokens.lineNumber(i);
+						continue;
+					}
+					if (tokens.isIdentifier(i, "import")) {
+						int end = endOfStatement(tokens, i);
+						importLines.set(tokens.lineNumber(i), tokens.endLineNumber(end) + 1);
+						i = end;
+						continue;
+					}
+				}
+				if (tokens.is(i, '{')) {
+					depth++;
+				} else if (tokens.is(i, '}')) {
+					depth = Math.max(0, depth - 1);
+				}
+				startOfStatement = tokens.is(i, ';') || tokens.is(i, '{') || tokens.is(i, '}');
+			}
+
+			return new Index(packageEndLineNumber, importLines, methodsOf(tokens));
+		}
+
+		private static DiskCache.Codec<Index> codec(int lineCount) {
+			return new DiskCache.Codec<Index>() {
+				@Override
+				public void write(Index value, DataOutput out) throws IOException {
+					out.writeInt(value.packageEndLineNumber);
+					long[] importLines = value.importLines.toLongArray();
+					out.writeInt(importLines.length);
+					for (long it : importLines) {
+						out.writeLong(it);
+					}
+					out.writeInt(value.methods.size());
+					for (Method method : value.methods) {
+						out.writeUTF(method.name());
+						out.writeInt(method.declarationLineNumber());
+						out.writeInt(method.bodyLineNumber());
+						out.writeInt(method.endLineNumber());
+					}
+				}
+
+				@Override
+				public Index read(DataInput in) throws IOException {
+					int packageEndLineNumber = checkLineNumber(in.readInt());
+					int words = in.readInt();
+					if (words < 0 || words > lineCount / 64 + 1) {
+						throw new IOException("invalid number of import words: " + words);
+					}
+					long[] importLines = new long[words];
+					for (int i = 0; i < importLines.length; i++) {
+						importLines[i] = in.readLong();
+					}
+					int methodCount = in.readInt();
+					if (methodCount < 0) {
+						throw new IOException("invalid number of methods: " + methodCount);
+					}
+					List<Method> methods = new ArrayList<>();
+					for (int i = 0; i < methodCount; i++) {
+						methods.add(new Method(in.readUTF(), checkLineNumber(in.readInt()), checkLineNumber(in.readInt()), checkLineNumber(in.readInt())));
+					}
+					return new Index(packageEndLineNumber, BitSet.valueOf(importLines), Collections.unmodifiableList(methods));
+				}
+
+				private int checkLineNumber(int lineNumber) throws IOException {
+					if (lineNumber < 0 || lineNumber > lineCount) {
+						throw new IOException("invalid line number: " + lineNumber);
+					}
+					return lineNumber;
+				}
+			};
+		}
+
+		private static int endOfStatement(JavaLexer tokens, int start) {
+			int i = start;
+			while (i + 1 < tokens.size() && !tokens.is(i, ';')) {
+				i++;
+			}
+			return i;
+		}
+	}
+
+	private static List<Method> methodsOf(JavaLexer tokens) {
+		List<Method> methods = new ArrayList<>();
+		Deque<Optional<Method>> openBraces = new ArrayDeque<>();
+
+		for (int i = 0; i < tokens.size(); i++) {
+			if (tokens.is(i, '{')) {
+				openBraces.push(methodDeclarationBefore(tokens, i));
+			} else if (tokens.is(i, '}') && !openBraces.isEmpty()) {
+				int endLineNumber = tokens.lineNumber(i);
+				openBraces.pop().ifPresent(method -> methods.add(method.withEndLineNumber(endLineNumber)));
+			}
+		}
+
+		methods.sort(Comparator.comparingInt(Method::declarationLineNumber).thenComparing(Method::endLineNumber, Comparator.reverseOrder()));
+		return Collections.unmodifiableList(methods);
+	}
+
+	/**
+	 * @return innermost method with this name containing this line,
+	 * innermost method containing this line if no name matches
+	 */
+	Optional<Method> methodAt(int lineNumber, String methodName) {
+		List<Method> methods = methods();
+		int index = lastDeclaredBefore(methods, lineNumber);
+		Method innermost = null;
+		for (int i = index; i >= 0; i--) {
+			Method method = methods.get(i);
+			if (method.contains(lineNumber)) {
+				if (method.name().equals(methodName)) {
+					return Optional.of(method);
+				}
+				if (innermost == null) {
+					innermost = method;
+				}
+			}
+		}
+		return Optional.ofNullable(innermost);
+	}
+
+	private static int lastDeclaredBefore(List<Method> methods, int lineNumber) {
+		int low = 0;
+		int high = methods.size() - 1;
+		int ret = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (methods.get(mid).declarationLineNumber() <= lineNumber) {
+				ret = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return ret;
+	}
+
+	private static Optional<Method> methodDeclarationBefore(JavaLexer tokens, int openBrace) {
+		int closingParen = skipThrows(tokens, tokens.previousSignificant(openBrace));
+		if (closingParen < 0 || !tokens.is(closingParen, ')')) {
+			return Optional.empty();
+		}
+		int openingParen = matchingOpenParen(tokens, closingParen);
+		if (openingParen < 0) {
+			return Optional.empty();
+		}
+		int name = tokens.previousSignificant(openingParen);
+		if (name < 0 || tokens.kind(name) != JavaLexer.Kind.IDENTIFIER || NOT_A_METHOD.contains(tokens.text(name))) {
+			return Optional.empty();
+		}
+		int beforeName = tokens.previousSignificant(name);
+		if (beforeName >= 0 && (tokens.isIdentifier(beforeName, "new") || tokens.isIdentifier(beforeName, "record") || tokens.is(beforeName, '.'))) {
+			return Optional.empty();
+		}
+		return Optional.of(new Method(tokens.text(name), tokens.lineNumber(name), tokens.lineNumber(openBrace), -1));
+	}
+
+	private static int skipThrows(JavaLexer tokens, int index) {
+		int i = index;
+		while (i >= 0 && (tokens.kind(i) == JavaLexer.Kind.IDENTIFIER || tokens.is(i, '.') || tokens.is(i, ',')
+			|| tokens.is(i, '<') || tokens.is(i, '>') || tokens.is(i, '?'))) {
+			if (tokens.isIdentifier(i, "throws")) {
+				return tokens.previousSignificant(i);
+			}
+			i = tokens.previousSignificant(i);
+		}
+		return index;
+	}
+
+	private static int matchingOpenParen(JavaLexer tokens, int closingParen) {
+		int depth = 0;
+		for (int i = closingParen; i >= 0; i--) {
+			if (tokens.is(i, ')')) {
+				depth++;
+			} else if (tokens.is(i, '(')) {
+				depth--;
+				if (depth == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	static final class Method {
+		private final String name;
+		private final int declarationLineNumber;
+		private final int bodyLineNumber;
+		private final int endLineNumber;
+
+		Method(String name, int declarationLineNumber, int bodyLineNumber, int endLineNumber) {
+			this.name = name;
+			this.declarationLineNumber = declarationLineNumber;
+			this.bodyLineNumber = bodyLineNumber;
+			this.endLineNumber = endLineNumber;
+		}
+
+		String name() {
+			return name;
+		}
+
+		int declarationLineNumber() {
+			return declarationLineNumber;
+		}
+
+		int bodyLineNumber() {
+			return bodyLineNumber;
+		}
+
+		int endLineNumber() {
+			return endLineNumber;
+		}
+
+		boolean contains(int lineNumber) {
+			return declarationLineNumber <= lineNumber && lineNumber <= endLineNumber;
+		}
+
+		private Method withEndLineNumber(int endLineNumber) {
+			return new Method(name, declarationLineNumber, bodyLineNumber, endLineNumber);
+		}
+
+		@Override
+		public String toString() {
+			return name + "[" + declarationLineNumber + "-" + endLineNumber + "]";
+		}
+	}
+}
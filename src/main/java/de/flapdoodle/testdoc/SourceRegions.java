@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * tagged regions of some lines, a region starts after a line containing {@code tag::name[]}
+ * and ends before a line containing {@code end::name[]}, so any comment style will do,
+ * a tag used more than once is one region made of all its parts, lines with markers are
+ * never part of a region
+ */
+final class SourceRegions {
+
+	private static final Pattern MARKER = Pattern.compile("\\b(tag|end)::([\\w.-]+)\\[\\]");
+
+	private final Map<String, int[]> ranges;
+	private final BitSet markerLines;
+
+	private SourceRegions(Map<String, int[]> ranges, BitSet markerLines) {
+		this.ranges = ranges;
+		this.markerLines = markerLines;
+	}
+
+	/**
+	 * one scan over all lines, a region without end ends with the last line
+	 */
+	static SourceRegions of(List<String> lines) {
+		Map<String, List<Integer>> bounds = new LinkedHashMap<>();
+		Map<String, Integer> open = new HashMap<>();
+		BitSet markerLines = new BitSet();
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i);
+			if (line.indexOf("::") < 0) {
+				continue;
+			}
+			Matcher matcher = MARKER.matcher(line);
+			while (matcher.find()) {
+				markerLines.set(i);
+				String name = matcher.group(2);
+				if ("tag".equals(matcher.group(1))) {
+					open.putIfAbsent(name, i + 1);
+				} else {
+					Integer start = open.remove(name);
+					if (start != null) {
+						bounds.computeIfAbsent(name, n -> new ArrayList<>()).add(start);
+						bounds.get(name).add(i);
+					}
+				}
+			}
+		}
+		open.forEach((name, start) -> {
+			bounds.computeIfAbsent(name, n -> new ArrayList<>()).add(start);
+			bounds.get(name).add(lines.size());
+		});
+
+		Map<String, int[]> ranges = new LinkedHashMap<>();
+		bounds.forEach((name, list) -> ranges.put(name, list.stream().mapToInt(Integer::intValue).toArray()));
+		return new SourceRegions(ranges, markerLines);
+	}
+
+	Set<String> names() {
+		return Collections.unmodifiableSet(ranges.keySet());
+	}
+
+	/**
+	 * @return lines of this region or empty if there is no region with this name
+	 */
+	Optional<List<String>> region(List<String> lines, String name) {
+		int[] range = ranges.get(name);
+		if (range == null) {
+			return Optional.empty();
+		}
+		List<String> ret = new ArrayList<>();
+		for (int r = 0; r < range.length; r += 2) {
+			for (int i = range[r]; i < range[r + 1]; i++) {
+				if (!markerLines.get(i)) {
+					ret.add(lines.get(i));
+				}
+			}
+		}
+		return Optional.of(ret);
+	}
+}
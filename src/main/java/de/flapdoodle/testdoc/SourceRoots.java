@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * all java files below the source roots, indexed once
+ *
+ * default roots are src/test/java, src/main/java and the generated (test) sources
+ * of the current directory and of every module below it,
+ * set de.flapdoodle.testdoc.sourceRoots to replace them and
+ * de.flapdoodle.testdoc.extraSourceRoots to add more (comma separated)
+ */
+final class SourceRoots {
+
+	static final String SOURCE_ROOTS_PROPERTY = "de.flapdoodle.testdoc.sourceRoots";
+	static final String EXTRA_SOURCE_ROOTS_PROPERTY = "de.flapdoodle.testdoc.extraSourceRoots";
+
+	private static final int MAX_MODULE_DEPTH = 5;
+	private static final Set<String> NOT_A_MODULE = new HashSet<>(Arrays.asList("src", "target", "build", "out", "node_modules"));
+	private static final List<String> BUILD_FILES = Arrays.asList("pom.xml", "build.gradle", "build.gradle.kts");
+
+	private final List<Path> roots;
+	private final Map<String, List<Path>> sourcesByName;
+	private final LookupCache<String, Path> probes;
+
+	private SourceRoots(List<Path> roots, Map<String, List<Path>> sourcesByName, LookupCache<String, Path> probes) {
+		this.roots = roots;
+		this.sourcesByName = sourcesByName;
+		this.probes = probes;
+	}
+
+	static SourceRoots instance() {
+		return Holder.INSTANCE;
+	}
+
+	List<Path> roots() {
+		return roots;
+	}
+
+	Optional<Path> sourceOf(Class<?> clazz, String sourceName) {
+		List<Path> candidates = sourcesByName.get(sourceName);
+		if (candidates == null) {
+			return probes.get(sourceName, this::probe);
+		}
+		if (candidates.size() == 1) {
+			return Optional.of(candidates.get(0));
+		}
+		Optional<Path> classLocation = locationOf(clazz);
+		if (!classLocation.isPresent()) {
+			return Optional.of(candidates.get(0));
+		}
+		Path location = classLocation.get();
+		Path best = candidates.get(0);
+		for (Path candidate : candidates) {
+			if (commonPrefix(candidate, location) > commonPrefix(best, location)) {
+				best = candidate;
+			}
+		}
+		return Optional.of(best);
+	}
+
+	// created after the index was build, results are cached by probes
+	private Optional<Path> probe(String sourceName) {
+		for (Path root : roots) {
+			Path resolved = root.resolve(sourceName);
+			if (Files.isRegularFile(resolved)) {
+				return Optional.of(resolved);
+			}
+		}
+		return Optional.empty();
+	}
+
+	static SourceRoots of(List<Path> roots) {
+		return of(roots, new LookupCache<>());
+	}
+
+	static SourceRoots of(List<Path> roots, LookupCache<String, Path> probes) {
+		Map<String, List<Path>> sourcesByName = new HashMap<>();
+		for (Path root : roots) {
+			try (Stream<Path> files = Files.walk(root)) {
+				files.filter(path -> path.getFileName().toString().endsWith(".java"))
+					.filter(Files::isRegularFile)
+					.forEach(path -> sourcesByName.computeIfAbsent(nameOf(root.relativize(path)), key -> new ArrayList<>(1)).add(path));
+			}
+			catch (IOException iox) {
+				throw new RuntimeException("could not index " + root, iox);
+			}
+		}
+		return new SourceRoots(Collections.unmodifiableList(new ArrayList<>(roots)), sourcesByName, probes);
+	}
+
+	static List<Path> configuredRoots(Path baseDir) {
+		List<String> configured = Configuration.getList(SOURCE_ROOTS_PROPERTY);
+		Stream<Path> roots = configured.isEmpty()
+			? defaultRoots(baseDir).stream()
+			: configured.stream().map(baseDir::resolve);
+
+		return Stream.concat(roots, Configuration.getList(EXTRA_SOURCE_ROOTS_PROPERTY).stream().map(baseDir::resolve))
+			.map(Path::normalize)
+			.filter(Files::isDirectory)
+			.distinct()
+			.collect(Collectors.toList());
+	}
+
+	static List<Path> defaultRoots(Path baseDir) {
+		List<Path> ret = new ArrayList<>();
+		for (Path module : modules(baseDir)) {
+			ret.add(module.resolve(Paths.get("src", "test", "java")));
+			ret.add(module.resolve(Paths.get("src", "main", "java")));
+			ret.addAll(subDirectories(module.resolve(Paths.get("target", "generated-test-sources"))));
+			ret.addAll(subDirectories(module.resolve(Paths.get("target", "generated-sources"))));
+		}
+		return ret.stream()
+			.filter(Files::isDirectory)
+			.collect(Collectors.toList());
+	}
+
+	private static List<Path> modules(Path baseDir) {
+		List<Path> ret = new ArrayList<>();
+		ret.add(baseDir);
+		try {
+			Files.walkFileTree(baseDir, EnumSet.noneOf(FileVisitOption.class), MAX_MODULE_DEPTH, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					if (dir.equals(baseDir)) {
+						return FileVisitResult.CONTINUE;
+					}
+					String name = dir.getFileName().toString();
+					if (name.startsWith(".") || NOT_A_MODULE.contains(name)) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					if (BUILD_FILES.stream().anyMatch(buildFile -> Files.isRegularFile(dir.resolve(buildFile)))) {
+						ret.add(dir);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not find modules in " + baseDir, iox);
+		}
+		Collections.sort(ret.subList(1, ret.size()));
+		return ret;
+	}
+
+	private static List<Path> subDirectories(Path dir) {
+		if (!Files.isDirectory(dir)) {
+			return Collections.emptyList();
+		}
+		try (Stream<Path> children = Files.list(dir)) {
+			return children.filter(Files::isDirectory)
+				.sorted()
+				.collect(Collectors.toList());
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not list " + dir, iox);
+		}
+	}
+
+	private static String nameOf(Path relativePath) {
+		StringBuilder sb = new StringBuilder();
+		for (Path part : relativePath) {
+			if (sb.length() > 0) {
+				sb.append('/');
+			}
+			sb.append(part);
+		}
+		return sb.toString();
+	}
+
+	private static Optional<Path> locationOf(Class<?> clazz) {
+		CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+		URL location = codeSource != null ? codeSource.getLocation() : null;
+		if (location == null) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(Paths.get(location.toURI()));
+		}
+		catch (URISyntaxException | RuntimeException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static int commonPrefix(Path a, Path b) {
+		int max = Math.min(a.getNameCount(), b.getNameCount());
+		int i = 0;
+		while (i < max && a.getName(i).equals(b.getName(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static final class Holder {
+		static final SourceRoots INSTANCE = of(configuredRoots(Paths.get("").toAbsolutePath()));
+	}
+}
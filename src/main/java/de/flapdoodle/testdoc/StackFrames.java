@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.Arrays;
+
+/**
+ * java 8 version, see src/main/java9 for the StackWalker based
+ * version packaged into the multi-release jar
+ */
+final class StackFrames {
+
+	private StackFrames() {
+		// no instance
+	}
+
+	static String strategy() {
+		return "Throwable.getStackTrace";
+	}
+
+	/**
+	 * @param skipFrames frames to skip, 0 is the caller of this method
+	 */
+	static Line lineAt(int skipFrames) {
+		StackTraceElement[] stackTrace = new RuntimeException().getStackTrace();
+		Preconditions.checkArgument(skipFrames >= 0, "invalid number of frames to skip: %s", skipFrames);
+		int stackAfterRecorderCall = skipFrames + 1;
+		Preconditions.checkArgument(stackAfterRecorderCall<stackTrace.length, "found recorder in stackTrace at %s, but nothing left: %s",stackAfterRecorderCall, Arrays.asList(stackTrace));
+		return lineOf(stackTrace[stackAfterRecorderCall]);
+	}
+
+	private static Line lineOf(StackTraceElement stack) {
+		return Line.builder()
+				.className(stack.getClassName())
+				.fileName(stack.getFileName())
+				.methodName(stack.getMethodName())
+				.lineNumber(stack.getLineNumber())
+				.build();
+	}
+}
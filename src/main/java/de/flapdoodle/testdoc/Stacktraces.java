@@ -16,8 +16,6 @@
  */
 package de.flapdoodle.testdoc;
 
-import java.util.Arrays;
-
 public abstract class Stacktraces {
 
 	private Stacktraces() {
@@ -29,7 +27,7 @@ public abstract class Stacktraces {
 	}
 	
 	static Line currentLine(Scope scope) {
-		return lineOf(new RuntimeException().getStackTrace(), offset(scope));
+		return StackFrames.lineAt(offset(scope));
 	}
 
 	private static int offset(Scope scope) {
@@ -43,21 +41,4 @@ public abstract class Stacktraces {
 		};
 		throw new IllegalArgumentException("scope not supported: "+scope);
 	}
-	
-	private static Line lineOf(StackTraceElement[] stackTrace, int skipLines) {
-		int stackAfterRecorderCall=skipLines;
-		Preconditions.checkArgument(stackAfterRecorderCall>0, "could not find recorder in stackTrace: %s",Arrays.asList(stackTrace));
-		Preconditions.checkArgument(stackAfterRecorderCall<stackTrace.length, "found recorder in stackTrace at %s, but nothing left: %s",stackAfterRecorderCall, Arrays.asList(stackTrace));
-		return lineOf(stackTrace[stackAfterRecorderCall]);
-	}
-
-	private static Line lineOf(StackTraceElement stack) {
-		return Line.builder()
-				.className(stack.getClassName())
-				.fileName(stack.getFileName())
-				.methodName(stack.getMethodName())
-				.lineNumber(stack.getLineNumber())
-				.build();
-	}
-
 }
@@ -18,11 +18,15 @@ package de.flapdoodle.testdoc;
 
 import org.immutables.value.Value;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 @Value.Immutable
 public abstract class Template {
@@ -34,6 +38,20 @@ public abstract class Template {
 		return ReplacementPattern.DEFAULT;
 	}
 
+	/**
+	 * used instead of {@link #pattern()}, if set
+	 */
+	public abstract Optional<Delimiters> customDelimiters();
+
+	public Delimiters delimiters() {
+		return customDelimiters().orElseGet(() -> pattern().delimiters());
+	}
+
+	@Value.Lazy
+	CompiledTemplate compiled() {
+		return CompiledTemplate.parse(source(), delimiters());
+	}
+
 	public static Template of(String source) {
 		return ImmutableTemplate.builder()
 			.source(source)
@@ -47,32 +65,49 @@ public abstract class Template {
 			.build();
 	}
 
+	public static Template of(String source, Delimiters delimiters) {
+		return ImmutableTemplate.builder()
+			.source(source)
+			.customDelimiters(delimiters)
+			.build();
+	}
+
 	public static String render(Template template, Map<String, String> replacements) {
-		return render(template, key -> Preconditions.checkNotNull(replacements.get(key),"could not resolve %s in %s",key, replacements.keySet()));
+		return render(template, lookUp(replacements));
 	}
 
 	public static String render(Template template, Map<String, String> replacements, BiFunction<String, Set<String>, String> fallback) {
-		return render(template, key -> {
+		return render(template, lookUp(replacements, fallback));
+	}
+
+	public static String render(Template template, Function<String, String> variableLookUp) {
+		return template.compiled().render(bind(template, variableLookUp));
+	}
+
+	public static void renderTo(Template template, Function<String, String> variableLookUp, Writer writer) throws IOException {
+		template.compiled().renderTo(bind(template, variableLookUp), writer);
+	}
+
+	public static void renderTo(Template template, Function<String, String> variableLookUp, WritableByteChannel channel, Charset charset) throws IOException {
+		template.compiled().renderTo(bind(template, variableLookUp), channel, charset);
+	}
+
+	// a lookup returning null is rendered as "null", like a StringBuilder would do
+	static Fragment[] bind(Template template, Function<String, String> variableLookUp) {
+		return template.compiled().bind(key -> Fragment.of(String.valueOf(variableLookUp.apply(key))));
+	}
+
+	static Function<String, String> lookUp(Map<String, String> replacements) {
+		return key -> Preconditions.checkNotNull(replacements.get(key),"could not resolve %s in %s",key, replacements.keySet());
+	}
+
+	static Function<String, String> lookUp(Map<String, String> replacements, BiFunction<String, Set<String>, String> fallback) {
+		return key -> {
 			String replacement = replacements.get(key);
 			if (replacement==null) {
 				replacement=Preconditions.checkNotNull(fallback.apply(key, replacements.keySet()),"fallback return null for %s", key);
 			}
 			return replacement;
-		});
-	}
-
-	public static String render(Template template, Function<String, String> variableLookUp) {
-		StringBuilder sb=new StringBuilder();
-		String source = template.source();
-
-		Matcher matcher = template.pattern().matcher(source);
-		int lastEnd=0;
-		while (matcher.find()) {
-			sb.append(source, lastEnd, matcher.start());
-			sb.append(variableLookUp.apply(matcher.group("label")));
-			lastEnd=matcher.end();
-		}
-		sb.append(source.substring(lastEnd));
-		return sb.toString();
+		};
 	}
 }
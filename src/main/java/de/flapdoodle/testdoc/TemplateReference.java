@@ -31,13 +31,18 @@ public interface TemplateReference {
 		return ReplacementPattern.DEFAULT;
 	}
 
+	/**
+	 * used instead of {@link #replacementPattern()}, if set
+	 */
+	Optional<Delimiters> customDelimiters();
+
+	default Delimiters delimiters() {
+		return customDelimiters().orElseGet(() -> replacementPattern().delimiters());
+	}
+
 	@Value.Lazy
 	default Optional<String> readContent() {
-		try {
-			return Optional.of(readContent(clazz(), templateName()));
-		} catch (RuntimeException rx) {
-			return Optional.empty();
-		}
+		return Resources.resource(clazz(), templateName());
 	}
 
 	static TemplateReference of(Class<?> clazz, String templateName) {
@@ -49,7 +54,12 @@ public interface TemplateReference {
 			.withReplacementPattern(replacementPattern);
 	}
 
+	static TemplateReference of(Class<?> clazz, String templateName, Delimiters delimiters) {
+		return ImmutableTemplateReference.of(clazz, templateName)
+			.withCustomDelimiters(delimiters);
+	}
+
 	static String readContent(Class<?> clazz, String template) {
-		return Resources.read(() -> Preconditions.checkNotNull(clazz.getResourceAsStream(template),"could not get %s for %s",template, clazz));
+		return Preconditions.checkPresent(Resources.resource(clazz, template),"could not get %s for %s",template, clazz).get();
 	}
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * templates shared by all recordings, read and compiled once
+ */
+abstract class Templates {
+
+	private static final ConcurrentMap<TemplateReference, Optional<Template>> TEMPLATES = new ConcurrentHashMap<>();
+
+	private Templates() {
+		// no instance
+	}
+
+	static Optional<Template> templateOf(TemplateReference templateReference) {
+		return TEMPLATES.computeIfAbsent(templateReference, reference -> reference.readContent()
+			.map(content -> Template.of(content, reference.delimiters())));
+	}
+
+	/**
+	 * used if a template could not be found
+	 */
+	static Template missingTemplateFallback() {
+		return templateOf(Renderer.class, "template-is-missing-fallback.md");
+	}
+
+	static Template templateOf(Class<?> clazz, String templateName) {
+		return Preconditions.checkPresent(templateOf(TemplateReference.of(clazz, templateName)), "could not get %s for %s", templateName, clazz).get();
+	}
+}
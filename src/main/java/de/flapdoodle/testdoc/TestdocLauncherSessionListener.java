@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.platform.launcher.LauncherSession;
+import org.junit.platform.launcher.LauncherSessionListener;
+
+/**
+ * registered as service by projects which opt in (see README), renders deferred
+ * documents, waits for documents written in the background and fails if one
+ * of them could not be rendered or written
+ */
+public class TestdocLauncherSessionListener implements LauncherSessionListener {
+
+	@Override
+	public void launcherSessionOpened(LauncherSession session) {
+		OutputWriter.instance().sessionOpened();
+		RenderPipeline.instance().sessionOpened();
+	}
+
+	@Override
+	public void launcherSessionClosed(LauncherSession session) {
+		try {
+			RenderPipeline.instance().sessionClosed();
+		}
+		finally {
+			OutputWriter.instance().sessionClosed();
+		}
+	}
+}
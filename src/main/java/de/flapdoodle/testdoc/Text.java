@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * decoded text with the offsets of each line, lines are split
+ * like BufferedReader.lines() does
+ */
+final class Text {
+
+	private final String content;
+	private final int lineCount;
+	private final int[] lineStart;
+	private final int[] lineEnd;
+
+	private Text(String content, int lineCount, int[] lineStart, int[] lineEnd) {
+		this.content = content;
+		this.lineCount = lineCount;
+		this.lineStart = lineStart;
+		this.lineEnd = lineEnd;
+	}
+
+	static Text of(String content) {
+		int[] lineStart = new int[16];
+		int[] lineEnd = new int[16];
+		int count = 0;
+		int start = 0;
+		int length = content.length();
+		for (int i = 0; i < length; i++) {
+			char c = content.charAt(i);
+			if (c == '\n' || c == '\r') {
+				if (count == lineStart.length) {
+					lineStart = Arrays.copyOf(lineStart, count * 2);
+					lineEnd = Arrays.copyOf(lineEnd, count * 2);
+				}
+				lineStart[count] = start;
+				lineEnd[count] = i;
+				count++;
+				if (c == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		if (start < length) {
+			if (count == lineStart.length) {
+				lineStart = Arrays.copyOf(lineStart, count + 1);
+				lineEnd = Arrays.copyOf(lineEnd, count + 1);
+			}
+			lineStart[count] = start;
+			lineEnd[count] = length;
+			count++;
+		}
+		return new Text(content, count, lineStart, lineEnd);
+	}
+
+	String content() {
+		return content;
+	}
+
+	int lineCount() {
+		return lineCount;
+	}
+
+	int lineStart(int index) {
+		checkIndex(index);
+		return lineStart[index];
+	}
+
+	int lineEnd(int index) {
+		checkIndex(index);
+		return lineEnd[index];
+	}
+
+	String line(int index) {
+		checkIndex(index);
+		return content.substring(lineStart[index], lineEnd[index]);
+	}
+
+	List<String> lines() {
+		return new Lines();
+	}
+
+	/**
+	 * @return all lines joined with \n, without copy if the content already looks like this
+	 */
+	String joinedWithNewLine() {
+		if (lineCount == 0) {
+			return "";
+		}
+		if (lineStart[0] == 0 && lineEnd[lineCount - 1] == content.length() && content.indexOf('\r') == -1) {
+			return content;
+		}
+		StringBuilder sb = new StringBuilder(content.length());
+		for (int i = 0; i < lineCount; i++) {
+			if (i > 0) {
+				sb.append('\n');
+			}
+			sb.append(content, lineStart[i], lineEnd[i]);
+		}
+		return sb.toString();
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= lineCount) {
+			throw new IndexOutOfBoundsException("line " + index + " of " + lineCount);
+		}
+	}
+
+	private final class Lines extends AbstractList<String> implements RandomAccess {
+		@Override
+		public String get(int index) {
+			return line(index);
+		}
+
+		@Override
+		public int size() {
+			return lineCount;
+		}
+	}
+}
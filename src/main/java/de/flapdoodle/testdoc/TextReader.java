@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * reads text with an explicit charset (de.flapdoodle.testdoc.charset, default UTF-8),
+ * files through a FileChannel, everything else through a pooled buffer
+ */
+abstract class TextReader {
+
+	static final String CHARSET_PROPERTY = "de.flapdoodle.testdoc.charset";
+
+	private static final int MAP_FILES_LARGER_THAN = 1024 * 1024;
+	private static final int POOLED_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final ThreadLocal<byte[]> POOLED_BUFFER = ThreadLocal.withInitial(() -> new byte[POOLED_BUFFER_SIZE]);
+
+	private TextReader() {
+		// no instance
+	}
+
+	static Charset charset() {
+		return Holder.CHARSET;
+	}
+
+	static Text read(Path path) {
+		return read(path, charset());
+	}
+
+	static Text read(Path path, Charset charset) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > MAP_FILES_LARGER_THAN) {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				return Text.of(decode(mapped, charset));
+			}
+			byte[] buffer = buffer((int) size);
+			ByteBuffer wrapped = ByteBuffer.wrap(buffer, 0, (int) size);
+			while (wrapped.hasRemaining() && channel.read(wrapped) >= 0) {
+				// read until full or eof
+			}
+			return Text.of(new String(buffer, 0, wrapped.position(), charset));
+		}
+		catch (IOException iox) {
+			throw new RuntimeException("could not read " + path, iox);
+		}
+	}
+
+	static Text read(InputStream input) {
+		return read(input, charset());
+	}
+
+	static Text read(InputStream input, Charset charset) {
+		try {
+			byte[] buffer = POOLED_BUFFER.get();
+			int length = 0;
+			int read;
+			while ((read = input.read(buffer, length, buffer.length - length)) >= 0) {
+				length += read;
+				if (length == buffer.length) {
+					buffer = buffer(buffer.length * 2, buffer, length);
+				}
+			}
+			return Text.of(new String(buffer, 0, length, charset));
+		}
+		catch (IOException iox) {
+			throw new RuntimeException(iox);
+		}
+	}
+
+	private static String decode(ByteBuffer bytes, Charset charset) throws IOException {
+		return charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE)
+			.decode(bytes)
+			.toString();
+	}
+
+	private static byte[] buffer(int size) {
+		byte[] pooled = POOLED_BUFFER.get();
+		return pooled.length >= size ? pooled : buffer(size, pooled, 0);
+	}
+
+	private static byte[] buffer(int size, byte[] old, int used) {
+		byte[] ret = new byte[size];
+		System.arraycopy(old, 0, ret, 0, used);
+		if (size <= MAX_POOLED_BUFFER_SIZE) {
+			POOLED_BUFFER.set(ret);
+		}
+		return ret;
+	}
+
+	private static final class Holder {
+		static final Charset CHARSET = Configuration.get(CHARSET_PROPERTY)
+			.map(String::trim)
+			.map(Charset::forName)
+			.orElse(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * java 9+ version, walks only the frames needed instead of
+ * materializing the whole stack trace
+ */
+final class StackFrames {
+
+	private static final StackWalker WALKER = StackWalker.getInstance(Collections.emptySet(), 8);
+
+	private StackFrames() {
+		// no instance
+	}
+
+	static String strategy() {
+		return "StackWalker";
+	}
+
+	/**
+	 * @param skipFrames frames to skip, 0 is the caller of this method
+	 */
+	static Line lineAt(int skipFrames) {
+		Preconditions.checkArgument(skipFrames >= 0, "invalid number of frames to skip: %s", skipFrames);
+		int stackAfterRecorderCall = skipFrames + 1;
+		Optional<StackWalker.StackFrame> frame = WALKER.walk(frames -> frames.skip(stackAfterRecorderCall).findFirst());
+		Preconditions.checkArgument(frame.isPresent(), "found recorder in stackTrace at %s, but nothing left", stackAfterRecorderCall);
+		return lineOf(frame.get());
+	}
+
+	private static Line lineOf(StackWalker.StackFrame frame) {
+		return Line.builder()
+				.className(frame.getClassName())
+				.fileName(frame.getFileName())
+				.methodName(frame.getMethodName())
+				.lineNumber(frame.getLineNumber())
+				.build();
+	}
+}
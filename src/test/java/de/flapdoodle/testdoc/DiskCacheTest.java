@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiskCacheTest {
+
+	private static final DiskCache.Codec<String> STRING_CODEC = new DiskCache.Codec<String>() {
+		@Override
+		public void write(String value, DataOutput out) throws IOException {
+			out.writeUTF(value);
+		}
+
+		@Override
+		public String read(DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void entriesAreLoadedByLaterInstances() {
+		String key = ContentHash.create().add("input").asHex();
+
+		DiskCache first = new DiskCache(tempDir);
+		assertThat(first.computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "computed")).isEqualTo("computed");
+		assertThat(first.misses()).isEqualTo(1);
+
+		DiskCache second = new DiskCache(tempDir);
+		assertThat(second.computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "not cached")).isEqualTo("computed");
+		assertThat(second.hits()).isEqualTo(1);
+		assertThat(second.misses()).isEqualTo(0);
+	}
+
+	@Test
+	public void damagedEntriesAreComputedAgain() throws IOException {
+		String key = ContentHash.create().add("input").asHex();
+		new DiskCache(tempDir).computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "computed");
+		Path entry = entries().get(0);
+
+		byte[] content = Files.readAllBytes(entry);
+		content[content.length - 10] ^= 0x01;
+		Files.write(entry, content);
+
+		DiskCache damaged = new DiskCache(tempDir);
+		assertThat(damaged.computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "again")).isEqualTo("again");
+		assertThat(damaged.invalid()).isEqualTo(1);
+
+		Files.write(entry, new byte[] { 1, 2, 3 });
+
+		DiskCache truncated = new DiskCache(tempDir);
+		assertThat(truncated.computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "once more")).isEqualTo("once more");
+		assertThat(truncated.invalid()).isEqualTo(1);
+
+		assertThat(new DiskCache(tempDir).computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "not cached")).isEqualTo("once more");
+		assertThat(entries()).hasSize(1);
+	}
+
+	@Test
+	public void entriesOfOtherVersionsAreNotUsed() {
+		String key = ContentHash.create().add("input").asHex();
+		new DiskCache(tempDir, "1.0").computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "computed");
+
+		DiskCache otherLibraryVersion = new DiskCache(tempDir, "1.1");
+		assertThat(otherLibraryVersion.computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "new library")).isEqualTo("new library");
+		assertThat(otherLibraryVersion.misses()).isEqualTo(1);
+
+		DiskCache otherVersion = new DiskCache(tempDir, "1.0");
+		assertThat(otherVersion.computeIfAbsent("kind", 2, key, STRING_CODEC, () -> "new code")).isEqualTo("new code");
+		assertThat(otherVersion.misses()).isEqualTo(1);
+
+		assertThat(new DiskCache(tempDir, "1.0").computeIfAbsent("kind", 1, key, STRING_CODEC, () -> "not cached")).isEqualTo("computed");
+	}
+
+	@Test
+	public void hashDependsOnValueBoundaries() {
+		assertThat(ContentHash.create().add("ab").add("c").asHex())
+			.isNotEqualTo(ContentHash.create().add("a").add("bc").asHex())
+			.hasSize(64);
+	}
+
+	private List<Path> entries() throws IOException {
+		try (Stream<Path> files = Files.walk(tempDir)) {
+			return files.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LookupCacheTest {
+
+	@Test
+	public void missesAreLookedUpAgainAfterAWhile() {
+		AtomicLong nanoTime = new AtomicLong(Long.MAX_VALUE - 10);
+		LookupCache<String, String> testee = new LookupCache<>(Duration.ofNanos(100), nanoTime::get);
+		List<String> lookUps = new ArrayList<>();
+
+		assertThat(testee.get("a", key -> lookUp(lookUps, key, Optional.empty()))).isEmpty();
+		nanoTime.addAndGet(99);
+		assertThat(testee.get("a", key -> lookUp(lookUps, key, Optional.of("found")))).isEmpty();
+		assertThat(lookUps).hasSize(1);
+
+		// nano time may overflow
+		nanoTime.addAndGet(1);
+		assertThat(testee.get("a", key -> lookUp(lookUps, key, Optional.of("found")))).contains("found");
+		assertThat(lookUps).hasSize(2);
+	}
+
+	@Test
+	public void foundValuesAreKept() {
+		AtomicLong nanoTime = new AtomicLong();
+		LookupCache<String, String> testee = new LookupCache<>(Duration.ofNanos(100), nanoTime::get);
+		List<String> lookUps = new ArrayList<>();
+
+		assertThat(testee.get("a", key -> lookUp(lookUps, key, Optional.of("found")))).contains("found");
+		nanoTime.addAndGet(Duration.ofDays(1).toNanos());
+		assertThat(testee.get("a", key -> lookUp(lookUps, key, Optional.empty()))).contains("found");
+		assertThat(lookUps).hasSize(1);
+
+		testee.clear();
+		assertThat(testee.get("a", key -> lookUp(lookUps, key, Optional.empty()))).isEmpty();
+		assertThat(lookUps).hasSize(2);
+	}
+
+	private static Optional<String> lookUp(List<String> lookUps, String key, Optional<String> result) {
+		lookUps.add(key);
+		return result;
+	}
+}
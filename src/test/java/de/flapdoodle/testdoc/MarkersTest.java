@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MarkersTest {
+
+	@Test
+	public void markersAreSortedByLineNumber() {
+		Markers markers = new Markers("method");
+		markers.start(line(30), Optional.of("second"));
+		markers.end(line(32));
+		markers.start(line(10), Optional.empty());
+		markers.end(line(12));
+
+		int[] inLineOrder = markers.inLineOrder();
+
+		assertThat(Arrays.stream(inLineOrder).map(markers::lineNumber)).containsExactly(10, 12, 30, 32);
+		assertThat(markers.label(inLineOrder[0])).isEmpty();
+		assertThat(markers.label(inLineOrder[2])).contains("second");
+		assertThat(markers.isStart(inLineOrder[2])).isTrue();
+		assertThat(markers.isStart(inLineOrder[3])).isFalse();
+	}
+
+	@Test
+	public void linesAreViewsOfTheSameMarkers() {
+		List<HasLine> lines = Arrays.asList(
+			Start.of("label", line(3)),
+			End.of(line(5))
+		);
+
+		Markers markers = Markers.byMethod(lines).get("method");
+
+		assertThat(markers.asLines()).isEqualTo(lines);
+		assertThat(markers.fileNames()).containsExactly("Sample.java");
+	}
+
+	@Test
+	public void lineNumbersWhichCanNotBePackedAreRejected() {
+		Markers markers = new Markers("method");
+
+		// unknown (-1) and native (-2) frames never get a line
+		assertThatThrownBy(() -> markers.start(line(-1), Optional.empty()))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("invalid lineNumber: -1");
+		assertThatThrownBy(() -> markers.end(line(-2)))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> markers.end(line(1 << 30)))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("invalid line number 1073741824 in method");
+		markers.end(line((1 << 30) - 1));
+
+		assertThat(markers.size()).isEqualTo(1);
+		assertThat(markers.lineNumber(0)).isEqualTo((1 << 30) - 1);
+	}
+
+	private static Line line(int lineNumber) {
+		return Line.builder()
+			.className("Sample")
+			.fileName("Sample.java")
+			.methodName("method")
+			.lineNumber(lineNumber)
+			.build();
+	}
+}
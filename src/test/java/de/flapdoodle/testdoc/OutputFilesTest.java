@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OutputFilesTest {
+
+	private static final FileTime LONG_AGO = FileTime.fromMillis(0);
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void unchangedFilesAreNotTouched() throws IOException {
+		Path file = existing("file.txt", "content");
+		Path document = existing("doc.md", "# foo");
+
+		OutputFiles testee = new OutputFiles(true);
+		testee.write(file, OutputFiles.content(bytes("content")));
+		testee.write(document, OutputFiles.content(Rendering.of(Template.of("# ${name}"), Collections.singletonMap("name", "foo")::get)));
+
+		assertThat(Files.getLastModifiedTime(file)).isEqualTo(LONG_AGO);
+		assertThat(Files.getLastModifiedTime(document)).isEqualTo(LONG_AGO);
+		assertThat(testee.skipped()).isEqualTo(2);
+		assertThat(testee.written()).isEqualTo(0);
+	}
+
+	@Test
+	public void changedFilesAreWritten() throws IOException {
+		Path sameSize = existing("same-size.txt", "content");
+		Path longer = existing("longer.md", "# foo");
+		Path shorter = existing("shorter.md", "# foo and more");
+		Path missing = tempDir.resolve("missing.md");
+
+		OutputFiles testee = new OutputFiles(true);
+		testee.write(sameSize, OutputFiles.content(bytes("CONTENT")));
+		testee.write(longer, OutputFiles.content(Rendering.of("# foo and more")));
+		testee.write(shorter, OutputFiles.content(Rendering.of("# foo")));
+		testee.write(missing, OutputFiles.content(Rendering.of("# new")));
+
+		assertThat(contentOf(sameSize)).isEqualTo("CONTENT");
+		assertThat(contentOf(longer)).isEqualTo("# foo and more");
+		assertThat(contentOf(shorter)).isEqualTo("# foo");
+		assertThat(contentOf(missing)).isEqualTo("# new");
+		assertThat(testee.skipped()).isEqualTo(0);
+		assertThat(testee.written()).isEqualTo(4);
+	}
+
+	@Test
+	public void everythingIsWrittenIfNotEnabled() throws IOException {
+		Path file = existing("file.txt", "content");
+
+		OutputFiles testee = new OutputFiles(false);
+		testee.write(file, OutputFiles.content(bytes("content")));
+
+		assertThat(Files.getLastModifiedTime(file)).isNotEqualTo(LONG_AGO);
+		assertThat(testee.written()).isEqualTo(1);
+	}
+
+	@Test
+	public void fileAndStreamContentIsCopiedWhenWritten() throws IOException {
+		Path source = Files.write(tempDir.resolve("source.bin"), bytes("big content"));
+		Path unchanged = existing("unchanged.bin", "big content");
+		Path fromFile = tempDir.resolve("from-file.bin");
+		Path fromStream = tempDir.resolve("from-stream.bin");
+
+		OutputFiles testee = new OutputFiles(true);
+		testee.write(unchanged, OutputFiles.content(source));
+		testee.write(fromFile, OutputFiles.content(source));
+		testee.write(fromStream, OutputFiles.content(() -> Files.newInputStream(source)));
+
+		assertThat(Files.getLastModifiedTime(unchanged)).isEqualTo(LONG_AGO);
+		assertThat(contentOf(fromFile)).isEqualTo("big content");
+		assertThat(contentOf(fromStream)).isEqualTo("big content");
+		assertThat(OutputFiles.content(source).size()).hasValue(11);
+		assertThat(OutputFiles.bytesOf(OutputFiles.content(() -> Files.newInputStream(source)))).isEqualTo(bytes("big content"));
+		assertThat(testee.skipped()).isEqualTo(1);
+		assertThat(testee.written()).isEqualTo(2);
+	}
+
+	@Test
+	public void failedWriteKeepsTheOldFile() throws IOException {
+		Path document = existing("doc.md", "# old");
+		Rendering failing = new Rendering() {
+			@Override
+			public String asString() {
+				throw new IllegalStateException("not used");
+			}
+
+			@Override
+			public void writeTo(Writer writer) {
+				throw new IllegalStateException("not used");
+			}
+
+			@Override
+			public void writeTo(WritableByteChannel channel, Charset charset) throws IOException {
+				channel.write(ByteBuffer.wrap(bytes("# new, but")));
+				throw new IllegalArgumentException("could not resolve name");
+			}
+		};
+
+		OutputFiles testee = new OutputFiles(false);
+		assertThatThrownBy(() -> testee.write(document, OutputFiles.content(failing)))
+			.isInstanceOf(IllegalArgumentException.class);
+
+		assertThat(contentOf(document)).isEqualTo("# old");
+		try (Stream<Path> files = Files.list(tempDir)) {
+			assertThat(files).containsExactly(document);
+		}
+		assertThat(testee.written()).isEqualTo(0);
+	}
+
+	@Test
+	public void renderedTextIsWrittenAsIs() throws IOException {
+		Path document = tempDir.resolve("doc.md");
+
+		new OutputFiles(false).write(document, OutputFiles.content(Rendering.of("keeps ${placeholder}")));
+
+		assertThat(contentOf(document)).isEqualTo("keeps ${placeholder}");
+	}
+
+	private Path existing(String name, String content) throws IOException {
+		Path file = Files.write(tempDir.resolve(name), bytes(content));
+		Files.setLastModifiedTime(file, LONG_AGO);
+		return file;
+	}
+
+	private static String contentOf(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+}
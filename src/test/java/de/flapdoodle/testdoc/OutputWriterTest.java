@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OutputWriterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void backgroundWritesAreDoneWhenSessionIsClosed() throws IOException {
+		OutputWriter testee = new OutputWriter(true, 2);
+
+		testee.sessionOpened();
+		for (int i = 0; i < 10; i++) {
+			testee.write(tempDir, "docs/doc" + i + ".md", Rendering.of("# doc " + i),
+				Collections.singletonMap("files/file" + i + ".txt", OutputFiles.content(("file " + i).getBytes(StandardCharsets.UTF_8))));
+		}
+		testee.sessionClosed();
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(tempDir.resolve("docs/doc" + i + ".md")).hasContent("# doc " + i);
+			assertThat(tempDir.resolve("files/file" + i + ".txt")).hasContent("file " + i);
+		}
+	}
+
+	@Test
+	public void writeErrorsAreThrownWhenSessionIsClosed() throws IOException {
+		Files.write(tempDir.resolve("docs"), new byte[0]);
+		OutputWriter testee = new OutputWriter(true, 2);
+
+		testee.sessionOpened();
+		testee.write(tempDir, "docs/doc.md", Rendering.of("# doc"), Collections.emptyMap(), Optional.of(OutputWriterTest.class), Optional.empty());
+		testee.write(tempDir, "other.md", Rendering.of("# other"), Collections.emptyMap());
+
+		assertThatThrownBy(testee::sessionClosed)
+			.hasMessage("could not write docs/doc.md (" + OutputWriterTest.class.getName() + ")")
+			.hasRootCauseInstanceOf(IOException.class);
+		assertThat(tempDir.resolve("other.md")).hasContent("# other");
+	}
+
+	@Test
+	public void everyWriteErrorIsReportedWithItsDocument() throws IOException {
+		Files.write(tempDir.resolve("docs"), new byte[0]);
+		Files.write(tempDir.resolve("files"), new byte[0]);
+		OutputWriter testee = new OutputWriter(true, 2);
+
+		testee.sessionOpened();
+		testee.write(tempDir, "docs/doc.md", Rendering.of("# doc"), Collections.emptyMap(), Optional.of(OutputWriterTest.class), Optional.empty());
+		testee.write(tempDir, "files/other.md", Rendering.of("# other"), Collections.emptyMap(), Optional.of(RecordingTest.class), Optional.empty());
+
+		assertThatThrownBy(testee::sessionClosed)
+			.hasMessage("2 documents failed:\n"
+				+ "could not write docs/doc.md (" + OutputWriterTest.class.getName() + ")\n"
+				+ "could not write files/other.md (" + RecordingTest.class.getName() + ")")
+			.satisfies(ex -> assertThat(ex.getSuppressed())
+				.extracting(Throwable::getMessage)
+				.containsExactly("could not write docs/doc.md (" + OutputWriterTest.class.getName() + ")",
+					"could not write files/other.md (" + RecordingTest.class.getName() + ")"));
+	}
+
+	@Test
+	public void writeWithoutSessionIsSynchronous() {
+		OutputWriter testee = new OutputWriter(true, 2);
+
+		testee.write(tempDir, "doc.md", Rendering.of("# doc"), Collections.emptyMap());
+
+		assertThat(tempDir.resolve("doc.md")).hasContent("# doc");
+	}
+}
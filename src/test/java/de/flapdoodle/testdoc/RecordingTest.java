@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RecordingTest {
+
+	@Test
+	public void concurrentRecordingRendersLikeSequentialRecording() throws Exception {
+		List<Consumer<Recording>> testMethods = Arrays.asList(RecordingTest::first, RecordingTest::second, RecordingTest::third);
+
+		Rendered sequential = render(testMethods, false);
+		assertThat(sequential.content).contains("`first`", "`second.named`", "`third.output`");
+		assertThat(sequential.files).containsExactly("first.txt", "third.txt");
+
+		List<Consumer<Recording>> reversed = new ArrayList<>(testMethods);
+		Collections.reverse(reversed);
+
+		for (int i = 0; i < 20; i++) {
+			Rendered concurrent = render(reversed, true);
+			assertThat(concurrent.content).isEqualTo(sequential.content);
+			assertThat(concurrent.files).containsExactlyElementsOf(sequential.files);
+		}
+	}
+
+	@Test
+	public void replacementsNotUsedInTemplateAreNotComputed() {
+		Recordings recordings = Recordings.builder()
+			.templateReference(TemplateReference.of(RecordingTest.class, "missing-lazy.md", ReplacementPattern.DEFAULT))
+			.linesOfCode(Arrays.asList("class Sample {", "}"))
+			// would fail, if computed
+			.putMethodsCalled("unused", CalledMethod.of(Line.builder()
+				.className("Sample")
+				.fileName("Sample.java")
+				.methodName("method")
+				.lineNumber(100)
+				.build()))
+			.putOutput("output", "content")
+			.build();
+
+		assertThat(Renderer.rendering(recordings).asString())
+			.contains("* `unused`", "* `output`");
+	}
+
+	@Test
+	public void duplicateKeysAreDetectedEvenIfNotUsed() {
+		Recordings recordings = Recordings.builder()
+			.templateReference(TemplateReference.of(RecordingTest.class, "missing-lazy.md", ReplacementPattern.DEFAULT))
+			.linesOfCode(Arrays.asList("class Sample {", "}"))
+			.putClasses("same", "class")
+			.putOutput("same", "output")
+			.build();
+
+		assertThatThrownBy(() -> Renderer.rendering(recordings))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("already set: same");
+	}
+
+	@Test
+	public void missingReplacementWithoutFallbackFailsWithFirstMissingKey() {
+		Recordings recordings = Recordings.builder()
+			.templateReference(TemplateReference.of(TemplateTest.class, "howto.md", ReplacementPattern.DEFAULT))
+			.linesOfCode(Arrays.asList("class Sample {", "}"))
+			.putOutput("fooClass", "foo")
+			.build();
+
+		assertThatThrownBy(() -> Renderer.rendering(recordings))
+			.isInstanceOf(NullPointerException.class)
+			.hasMessage("could not resolve theMethodNameIsTheKey in [fooClass]");
+	}
+
+	@Test
+	public void missingReplacementsAreResolvedInOneCall() {
+		List<Set<String>> calls = new ArrayList<>();
+		Recordings recordings = Recordings.builder()
+			.templateReference(TemplateReference.of(TemplateTest.class, "howto.md", ReplacementPattern.DEFAULT))
+			.linesOfCode(Arrays.asList("class Sample {", "}"))
+			.putOutput("fooClass", "foo")
+			.missingReplacements((missing, recorded) -> {
+				calls.add(missing);
+				assertThat(recorded).containsExactly("fooClass");
+				return missing.stream().collect(Collectors.toMap(label -> label, label -> "<" + label + ">"));
+			})
+			.build();
+
+		String rendered = Renderer.rendering(recordings).asString();
+
+		assertThat(calls).hasSize(1);
+		assertThat(calls.get(0)).containsExactly("theMethodNameIsTheKey", "theMethodNameIsTheKey.BarClass",
+			"multipleCodeBlocks", "multipleCodeBlocks.1", "multipleCodeBlocks.2", "multipleCodeBlocks.named");
+		assertThat(rendered).contains("foo", "<theMethodNameIsTheKey.BarClass>", "<multipleCodeBlocks.named>");
+	}
+
+	@Test
+	public void replacementNotFoundFallbackIsCalledOncePerLabel() {
+		Map<String, Integer> calls = new LinkedHashMap<>();
+		Recordings recordings = Recordings.builder()
+			.templateReference(TemplateReference.of(TemplateTest.class, "howto.md", ReplacementPattern.DEFAULT))
+			.linesOfCode(Arrays.asList("class Sample {", "}"))
+			.replacementNotFoundFallback((label, recorded) -> {
+				calls.merge(label, 1, Integer::sum);
+				return "<" + label + ">";
+			})
+			.build();
+
+		Renderer.rendering(recordings);
+
+		assertThat(calls).hasSize(7).containsEntry("theMethodNameIsTheKey.BarClass", 1);
+	}
+
+	@Test
+	public void writeResultDoesNotParseRenderedTextAgain() {
+		List<String> written = new ArrayList<>();
+
+		Recording.runWithTemplateConsumer((name, content, files) -> written.add(content))
+			.accept(() -> Recording.writeResult("doc.md", "keeps ${placeholder}", Collections.emptyMap()));
+
+		assertThat(written).containsExactly("keeps ${placeholder}");
+	}
+
+	@Test
+	public void filesAddedAsPathOrStreamAreReadWhenWritten(@TempDir Path tempDir) throws IOException {
+		Path image = Files.write(tempDir.resolve("image.png"), bytes("first version"));
+		Recording recording = Recorder.with(RecordingTest.class, "missing-files.md", ReplacementPattern.DEFAULT, TabSize.spaces(2));
+
+		recording.file("image", "image.png", image);
+		recording.file("archive", "archive.zip", () -> new ByteArrayInputStream(bytes("streamed")));
+		Files.write(image, bytes("second version"));
+
+		Map<String, byte[]> written = new LinkedHashMap<>();
+		Recording.runWithTemplateConsumer((name, content, files) -> written.putAll(files))
+			.accept(() -> recording.afterAll(null));
+
+		assertThat(written.keySet()).containsExactly("image.png", "archive.zip");
+		assertThat(written.get("image.png")).isEqualTo(bytes("second version"));
+		assertThat(written.get("archive.zip")).isEqualTo(bytes("streamed"));
+	}
+
+	@Test
+	public void fileDeletedBeforeWritingFailsWithClearMessage(@TempDir Path tempDir) throws IOException {
+		Path image = Files.write(tempDir.resolve("image.png"), bytes("content"));
+		Recording recording = Recorder.with(RecordingTest.class, "missing-files.md", ReplacementPattern.DEFAULT, TabSize.spaces(2));
+
+		recording.file("image", "image.png", image);
+		// like a @TempDir of a test method, which is deleted before afterAll
+		Files.delete(image);
+
+		assertThatThrownBy(() -> Recording.runWithTemplateConsumer((name, content, files) -> {})
+			.accept(() -> recording.afterAll(null)))
+			.hasStackTraceContaining("file image.png (" + image + ") was deleted before the document was written");
+
+		OutputWriter writer = new OutputWriter(true, 1);
+		writer.sessionOpened();
+		writer.write(tempDir, "doc.md", Rendering.of("# doc"), Collections.singletonMap("image.png", OutputFiles.content(image, "file image.png")));
+		assertThatThrownBy(writer::sessionClosed)
+			.hasStackTraceContaining("file image.png was deleted before the document was written");
+		assertThat(tempDir.resolve("image.png")).doesNotExist();
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void first(Recording recording) {
+		recording.begin();
+		// first
+		recording.end();
+		recording.file("file", "first.txt", "first".getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void second(Recording recording) {
+		recording.begin();
+		// second
+		recording.end();
+		recording.begin("named");
+		// second - named
+		recording.end();
+	}
+
+	private static void third(Recording recording) {
+		recording.output("output", "third");
+		recording.begin();
+		// third
+		recording.end();
+		recording.file("file", "third.txt", "third".getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Rendered render(List<Consumer<Recording>> testMethods, boolean concurrent) throws Exception {
+		Recording recording = Recorder.with(RecordingTest.class, "missing-concurrent.md", ReplacementPattern.DEFAULT, TabSize.spaces(2));
+
+		if (concurrent) {
+			ExecutorService executor = Executors.newFixedThreadPool(testMethods.size());
+			try {
+				CountDownLatch startTogether = new CountDownLatch(1);
+				List<Future<?>> running = new ArrayList<>();
+				for (Consumer<Recording> testMethod : testMethods) {
+					running.add(executor.submit(() -> {
+						startTogether.await();
+						testMethod.accept(recording);
+						return null;
+					}));
+				}
+				startTogether.countDown();
+				for (Future<?> future : running) {
+					future.get();
+				}
+			}
+			finally {
+				executor.shutdown();
+			}
+		} else {
+			testMethods.forEach(testMethod -> testMethod.accept(recording));
+		}
+
+		Rendered ret = new Rendered();
+		Recording.runWithTemplateConsumer((name, content, files) -> {
+			ret.content = content;
+			ret.files = new ArrayList<>(files.keySet());
+		}).accept(() -> recording.afterAll(null));
+		return ret;
+	}
+
+	private static class Rendered {
+		String content;
+		List<String> files;
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RenderFingerprintTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void fingerprintChangesWithAnyInput() {
+		Map<String, OutputFiles.Content> files = Collections.singletonMap("file.txt", OutputFiles.content(new byte[] { 1, 2 }));
+
+		String fingerprint = RenderFingerprint.fingerprintOf("doc.md", recordings("content"), files).get();
+
+		assertThat(RenderFingerprint.fingerprintOf("doc.md", recordings("content"), files)).contains(fingerprint);
+		assertThat(RenderFingerprint.fingerprintOf("other.md", recordings("content"), files).get()).isNotEqualTo(fingerprint);
+		assertThat(RenderFingerprint.fingerprintOf("doc.md", recordings("changed"), files).get()).isNotEqualTo(fingerprint);
+		assertThat(RenderFingerprint.fingerprintOf("doc.md", recordings("content"), Collections.singletonMap("file.txt", OutputFiles.content(new byte[] { 1, 3 }))).get())
+			.isNotEqualTo(fingerprint);
+	}
+
+	@Test
+	public void noFingerprintIfFallbackIsUsed() {
+		Recordings withFallback = Recordings.builder()
+			.from(recordings("content"))
+			.replacementNotFoundFallback((key, keys) -> key)
+			.build();
+
+		assertThat(RenderFingerprint.fingerprintOf("doc.md", withFallback, Collections.emptyMap())).isEmpty();
+	}
+
+	@Test
+	public void storedFingerprintMatchesIfDocumentAndFilesExist() throws IOException {
+		Path destination = tempDir.resolve("destination");
+		Path fingerprints = tempDir.resolve("cache/fingerprints");
+		Files.createDirectories(destination.resolve("docs"));
+		Files.write(destination.resolve("docs/doc.md"), new byte[0]);
+
+		assertThat(RenderFingerprint.matches(fingerprints, destination, "docs/doc.md", Collections.emptySet(), "abc")).isFalse();
+
+		long hits = RenderFingerprint.hits();
+		RenderFingerprint.store(fingerprints, destination, "docs/doc.md", "abc");
+
+		assertThat(RenderFingerprint.fileOf(fingerprints, destination.resolve("docs/doc.md"))).hasContent("abc");
+		assertThat(RenderFingerprint.matches(fingerprints, destination, "docs/doc.md", Collections.emptySet(), "abc")).isTrue();
+		assertThat(RenderFingerprint.hits()).isEqualTo(hits + 1);
+		assertThat(RenderFingerprint.matches(fingerprints, destination, "docs/doc.md", Collections.emptySet(), "abd")).isFalse();
+		assertThat(RenderFingerprint.matches(fingerprints, destination, "docs/doc.md", Collections.singleton("file.txt"), "abc")).isFalse();
+
+		Files.delete(destination.resolve("docs/doc.md"));
+		assertThat(RenderFingerprint.matches(fingerprints, destination, "docs/doc.md", Collections.emptySet(), "abc")).isFalse();
+	}
+
+	@Test
+	public void nothingButDocumentsIsWrittenIntoTheDestination() throws IOException {
+		Path destination = tempDir.resolve("destination");
+		Path fingerprints = tempDir.resolve("cache/fingerprints");
+		Files.createDirectories(destination);
+
+		new OutputWriter(false, 1).write(destination, "doc.md", Rendering.of("# doc"), Collections.emptyMap());
+		RenderFingerprint.store(fingerprints, destination, "doc.md", "abc");
+
+		try (Stream<Path> files = Files.list(destination)) {
+			assertThat(files).containsExactly(destination.resolve("doc.md"));
+		}
+	}
+
+	private static Recordings recordings(String output) {
+		return Recordings.builder()
+			.templateReference(TemplateReference.of(RenderFingerprintTest.class, "missing-fingerprint.md", ReplacementPattern.DEFAULT))
+			.linesOfCode(Arrays.asList("class Sample {", "}"))
+			.putOutput("output", output)
+			.build();
+	}
+}
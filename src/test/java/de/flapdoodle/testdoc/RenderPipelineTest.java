@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class RenderPipelineTest {
+
+	@Test
+	public void deferredDocumentsAreRenderedWhenSessionIsClosed() {
+		RenderPipeline testee = new RenderPipeline(true, 4);
+		Set<String> rendered = ConcurrentHashMap.newKeySet();
+
+		testee.sessionOpened();
+		for (int i = 0; i < 20; i++) {
+			String name = "doc" + i;
+			assertThat(testee.defer(name, RenderPipelineTest.class, () -> rendered.add(name))).isTrue();
+		}
+		assertThat(rendered).isEmpty();
+		testee.sessionClosed();
+
+		assertThat(rendered).hasSize(20);
+	}
+
+	@Test
+	public void renderErrorsAreThrownWhenSessionIsClosed() {
+		RenderPipeline testee = new RenderPipeline(true, 2);
+		Set<String> rendered = ConcurrentHashMap.newKeySet();
+
+		testee.sessionOpened();
+		testee.defer("broken", RenderPipelineTest.class, () -> {
+			throw new IllegalArgumentException("broken");
+		});
+		testee.defer("other", RenderPipelineTest.class, () -> rendered.add("other"));
+
+		assertThatThrownBy(testee::sessionClosed)
+			.hasMessage("could not render broken (" + RenderPipelineTest.class.getName() + ")")
+			.hasRootCauseInstanceOf(IllegalArgumentException.class);
+		assertThat(rendered).containsExactly("other");
+	}
+
+	@Test
+	public void renderErrorsAreAttributedToTheirTestClass() {
+		RenderPipeline testee = new RenderPipeline(true, 2);
+
+		testee.sessionOpened();
+		testee.defer("first.md", RenderPipelineTest.class, () -> {
+			throw new IllegalArgumentException("first");
+		});
+		testee.defer("fine.md", OutputWriterTest.class, () -> {});
+		testee.defer("second.md", RecordingTest.class, () -> {
+			throw new IllegalStateException("second");
+		});
+
+		assertThatThrownBy(testee::sessionClosed)
+			.satisfies(ex -> assertThat(ex.getSuppressed())
+				.extracting(Throwable::getMessage, failure -> rootCauseOf(failure).getMessage())
+				.containsExactly(
+					tuple("could not render first.md (" + RenderPipelineTest.class.getName() + ")", "first"),
+					tuple("could not render second.md (" + RecordingTest.class.getName() + ")", "second")));
+	}
+
+	@Test
+	public void nothingIsDeferredWithoutSessionOrIfDisabled() {
+		assertThat(new RenderPipeline(true, 2).defer("doc", RenderPipelineTest.class, () -> {})).isFalse();
+
+		RenderPipeline disabled = new RenderPipeline(false, 2);
+		disabled.sessionOpened();
+		assertThat(disabled.defer("doc", RenderPipelineTest.class, () -> {})).isFalse();
+	}
+
+	private static Throwable rootCauseOf(Throwable throwable) {
+		Throwable ret = throwable;
+		while (ret.getCause() != null) {
+			ret = ret.getCause();
+		}
+		return ret;
+	}
+}
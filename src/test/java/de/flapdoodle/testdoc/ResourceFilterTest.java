@@ -18,6 +18,10 @@ package de.flapdoodle.testdoc;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class ResourceFilterTest {
@@ -55,4 +59,63 @@ public class ResourceFilterTest {
 		
 		assertEquals(match,indented);
 	}
+
+	@Test
+	public void dedentByCommonIndentation() {
+		String src="    a\n"
+				+ "      b\n"
+				+ "\n"
+				+ "    c";
+
+		assertThat(ResourceFilter.dedent().apply(src)).isEqualTo("a\n  b\n\nc");
+		assertThat(ResourceFilter.dedent(5).apply(src)).isEqualTo("a\n b\n\nc");
+	}
+
+	@Test
+	public void lineRangeWithoutTrailingSeparator() {
+		String src="1\n2\n3\n4";
+
+		assertThat(ResourceFilter.lines(2, 3).apply(src)).isEqualTo("2\n3");
+		assertThat(ResourceFilter.lines(3, 10).apply(src)).isEqualTo("3\n4");
+	}
+
+	@Test
+	public void replaceLiteralInEachLine() {
+		String src="a.b.c\n\r$x.$x";
+
+		assertThat(ResourceFilter.replace(".", "$").apply(src)).isEqualTo("a$b$c\n\r$x$$x");
+		assertThat(ResourceFilter.replace("$x", "y").apply(src)).isEqualTo("a.b.c\n\ry.y");
+	}
+
+	@Test
+	public void fusedFiltersPassEachLineOnce() {
+		AtomicInteger calls = new AtomicInteger();
+		LineFilter counting = next -> (line, separator) -> {
+			calls.incrementAndGet();
+			return next.line(line, separator);
+		};
+
+		ResourceFilter joined = ResourceFilter.join(counting, ResourceFilter.lines(2, 3), ResourceFilter.replace("x", "y"), ResourceFilter.indent("> "));
+
+		assertThat(joined).isInstanceOf(LineFilter.class);
+		assertThat(joined.apply("x1\nx2\nx3\nx4\nx5")).isEqualTo("> y2\n> y3");
+		assertThat(calls.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void joinKeepsOrderWithPlainFilters() {
+		ResourceFilter joined = ResourceFilter.join(ResourceFilter.indent("-"), String::toUpperCase, ResourceFilter.indent("+"));
+
+		assertThat(joined.apply("a\nb")).isEqualTo("+-A\n+-B");
+	}
+
+	@Test
+	public void streamedResourceMatchesFilteredString() {
+		LineFilter filter = LinePipeline.fuse(Arrays.asList(ResourceFilter.indent("\t"), ResourceFilter.replace("<", "&lt;")));
+
+		assertThat(Resources.resource(HowToHowToTest.class, "howto-howto-pom.part", filter))
+			.isEqualTo(Resources.resource(HowToHowToTest.class, "howto-howto-pom.part").map(filter));
+		assertThat(Resources.resource(HowToHowToTest.class, "howto-howto-pom.part", ResourceFilter.lines(2, 3)))
+			.isEqualTo(Resources.resource(HowToHowToTest.class, "howto-howto-pom.part").map(ResourceFilter.lines(2, 3)));
+	}
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResourceIndexTest {
+
+	@Test
+	public void sameLocationAsClassGetResource() {
+		assertThat(ResourceIndex.urlOf(HowToHowToTest.class, "howto-howto-pom.part"))
+			.isEqualTo(Optional.ofNullable(HowToHowToTest.class.getResource("howto-howto-pom.part")))
+			.isPresent();
+		assertThat(ResourceIndex.urlOf(ResourceIndexTest.class, "/de/flapdoodle/testdoc/howto-howto-pom.part"))
+			.isEqualTo(Optional.ofNullable(HowToHowToTest.class.getResource("howto-howto-pom.part")));
+		assertThat(ResourceIndex.urlOf(String.class, "/java/lang/String.class"))
+			.isEqualTo(Optional.ofNullable(String.class.getResource("/java/lang/String.class")));
+	}
+
+	@Test
+	public void absoluteNames() {
+		assertThat(ResourceIndex.absoluteName(ResourceIndexTest.class, "foo.md")).isEqualTo("de/flapdoodle/testdoc/foo.md");
+		assertThat(ResourceIndex.absoluteName(ResourceIndexTest[].class, "foo.md")).isEqualTo("de/flapdoodle/testdoc/foo.md");
+		assertThat(ResourceIndex.absoluteName(ResourceIndexTest.class, "/foo.md")).isEqualTo("foo.md");
+	}
+
+	@Test
+	public void missingResourcesAreLookedUpOnce() {
+		String name = "missing-" + System.nanoTime() + ".md";
+
+		long misses = ResourceIndex.misses();
+		assertThat(ResourceIndex.urlOf(ResourceIndexTest.class, name)).isEmpty();
+		assertThat(ResourceIndex.misses()).isEqualTo(misses + 1);
+
+		long hits = ResourceIndex.hits();
+		assertThat(ResourceIndex.urlOf(ResourceIndexTest.class, name)).isEmpty();
+		assertThat(TemplateReference.of(ResourceIndexTest.class, name).readContent()).isEmpty();
+		assertThat(ResourceIndex.hits()).isEqualTo(hits + 2);
+		assertThat(ResourceIndex.misses()).isEqualTo(misses + 1);
+	}
+}
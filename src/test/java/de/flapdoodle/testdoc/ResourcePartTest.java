@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResourcePartTest {
+
+	private static final String CONTENT = "one\r\ntwo\nthree\rfour\n\nsix\n";
+
+	@Test
+	public void lineRangeAndHead(@TempDir Path tempDir) throws IOException {
+		URL file = fileWith(tempDir, CONTENT);
+
+		assertThat(read(ResourcePart.lines(2, 4), file)).isEqualTo("two\nthree\nfour");
+		assertThat(read(ResourcePart.lines(5, 9), file)).isEqualTo("\nsix");
+		assertThat(read(ResourcePart.head(1), file)).isEqualTo("one");
+	}
+
+	@Test
+	public void tailOfFileSeeksLikeStreamReads(@TempDir Path tempDir) throws IOException {
+		URL file = fileWith(tempDir, CONTENT);
+		URL stream = streamWith(CONTENT);
+
+		for (int lines = 1; lines <= 8; lines++) {
+			assertThat(read(ResourcePart.tail(lines), file))
+				.describedAs("tail(%s)", lines)
+				.isEqualTo(read(ResourcePart.tail(lines), stream));
+		}
+		assertThat(read(ResourcePart.tail(2), file)).isEqualTo("\nsix");
+		assertThat(read(ResourcePart.tail(4), file)).isEqualTo("three\nfour\n\nsix");
+		assertThat(read(ResourcePart.tail(10), file)).isEqualTo("one\ntwo\nthree\nfour\n\nsix");
+	}
+
+	@Test
+	public void tailOfLargeFileSpansSeekBuffers(@TempDir Path tempDir) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			sb.append("line ").append(i).append("\r\n");
+		}
+		URL file = fileWith(tempDir, sb.toString());
+
+		assertThat(read(ResourcePart.tail(3), file)).isEqualTo("line 9997\nline 9998\nline 9999");
+		assertThat(read(ResourcePart.tail(5000), file)).isEqualTo(read(ResourcePart.tail(5000), streamWith(sb.toString())));
+	}
+
+	@Test
+	public void byteRange(@TempDir Path tempDir) throws IOException {
+		URL file = fileWith(tempDir, CONTENT);
+		URL stream = streamWith(CONTENT);
+
+		assertThat(read(ResourcePart.bytes(5, 8), file)).isEqualTo("two\nthre");
+		assertThat(read(ResourcePart.bytes(5, 8), stream)).isEqualTo("two\nthre");
+		assertThat(read(ResourcePart.bytes(20, 100), file)).isEqualTo("\nsix");
+		assertThat(read(ResourcePart.bytes(100, 10), stream)).isEmpty();
+	}
+
+	@Test
+	public void byteRangePastTheEndIsCut(@TempDir Path tempDir) throws IOException {
+		URL file = fileWith(tempDir, CONTENT);
+		URL stream = streamWith(CONTENT);
+
+		for (URL url : Arrays.asList(file, stream)) {
+			assertThat(read(ResourcePart.bytes(20, 100), url)).isEqualTo("\nsix").doesNotContain("\0");
+			assertThat(read(ResourcePart.bytes(0, Integer.MAX_VALUE), url)).isEqualTo(read(ResourcePart.lines(1, 100), url));
+			assertThat(read(ResourcePart.bytes(CONTENT.length(), 10), url)).isEmpty();
+			assertThat(read(ResourcePart.bytes(100, 10), url)).isEmpty();
+		}
+	}
+
+	@Test
+	public void taggedRegion(@TempDir Path tempDir) throws IOException {
+		URL file = fileWith(tempDir, "a\n# tag::one[]\nb\n# tag::two[]\nc\n# end::two[]\n# end::one[]\nd");
+
+		assertThat(read(ResourcePart.tagged("one"), file)).isEqualTo("b\nc");
+		assertThat(read(ResourcePart.tagged("two"), file)).isEqualTo("c");
+		assertThat(read(ResourcePart.tagged("one"), streamWith("tag::one[]\nx\nend::one[]"))).isEqualTo("x");
+		assertThatThrownBy(() -> read(ResourcePart.tagged("three"), file))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void partOfClasspathResource() {
+		String all = Resources.resource(HowToHowToTest.class, "howto-howto-pom.part").get();
+		String[] lines = all.split("\n");
+
+		assertThat(Resources.resource(HowToHowToTest.class, "howto-howto-pom.part", ResourcePart.tail(2), ResourceFilter.indent("> ")))
+			.contains("> " + lines[lines.length - 2] + "\n> " + lines[lines.length - 1]);
+		assertThat(Resources.resource(HowToHowToTest.class, "missing.part", ResourcePart.head(2), next -> next))
+			.isEmpty();
+	}
+
+	private static String read(ResourcePart part, URL url) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		part.read(url, StandardCharsets.UTF_8, LinePipeline.appendTo(sb));
+		return sb.toString();
+	}
+
+	private static URL fileWith(Path tempDir, String content) throws IOException {
+		return Files.write(tempDir.resolve("content.txt"), content.getBytes(StandardCharsets.UTF_8)).toUri().toURL();
+	}
+
+	private static URL streamWith(String content) throws IOException {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		return new URL(null, "bytes:content", new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL url) {
+				return new URLConnection(url) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						return new ByteArrayInputStream(bytes);
+					}
+				};
+			}
+		});
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceBlockTest {
+
+	@Test
+	public void commonIndentIsStrippedWhileWriting() {
+		SourceBlock block = SourceBlock.of(Arrays.asList("    if (a) {", "", "  ", "      b();", "    }"));
+
+		assertThat(block.asString()).isEqualTo("if (a) {\n\n\n  b();\n}");
+	}
+
+	@Test
+	public void joinedFragmentsAreSeparated() {
+		Fragment joined = Fragment.join(Arrays.asList(
+			SourceBlock.of(Arrays.asList("  a();")),
+			Fragment.of("b"),
+			SourceBlock.of(Arrays.asList())
+		), "\n...\n");
+
+		assertThat(joined.asString()).isEqualTo("a();\n...\nb\n...\n");
+	}
+}
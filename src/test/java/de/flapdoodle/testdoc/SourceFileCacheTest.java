@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceFileCacheTest {
+
+	@TempDir
+	Path tempDir;
+
+	private final AtomicInteger loaded = new AtomicInteger();
+
+	@Test
+	public void sameFileIsReadOnlyOncePerTabSize() throws IOException {
+		Path source = write("Sample.java", "class Sample {\n\tint a;\n}");
+		SourceFileCache testee = new SourceFileCache(1024, this::load);
+
+		assertThat(testee.linesOf(source, TabSize.spaces(2))).contains(Arrays.asList("class Sample {", "  int a;", "}"));
+		assertThat(testee.linesOf(source, TabSize.spaces(2))).contains(Arrays.asList("class Sample {", "  int a;", "}"));
+		assertThat(testee.linesOf(source, TabSize.spaces(4))).contains(Arrays.asList("class Sample {", "    int a;", "}"));
+
+		assertThat(loaded.get()).isEqualTo(2);
+		assertThat(testee.hits()).isEqualTo(1);
+		assertThat(testee.misses()).isEqualTo(2);
+	}
+
+	@Test
+	public void modifiedFileIsReadAgain() throws IOException {
+		Path source = write("Sample.java", "class Sample {}");
+		SourceFileCache testee = new SourceFileCache(1024, this::load);
+
+		assertThat(testee.linesOf(source, TabSize.spaces(2))).contains(Arrays.asList("class Sample {}"));
+
+		write("Sample.java", "class Sample { int a; }");
+		Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 2000));
+
+		assertThat(testee.linesOf(source, TabSize.spaces(2))).contains(Arrays.asList("class Sample { int a; }"));
+		assertThat(testee.misses()).isEqualTo(2);
+		assertThat(testee.hits()).isEqualTo(0);
+	}
+
+	@Test
+	public void leastRecentlyUsedFilesAreEvicted() throws IOException {
+		Path first = write("First.java", "0123456789");
+		Path second = write("Second.java", "0123456789");
+		Path third = write("Third.java", "0123456789");
+		SourceFileCache testee = new SourceFileCache(25, this::load);
+
+		testee.linesOf(first, TabSize.spaces(2));
+		testee.linesOf(second, TabSize.spaces(2));
+		testee.linesOf(first, TabSize.spaces(2));
+		testee.linesOf(third, TabSize.spaces(2));
+
+		assertThat(testee.evictions()).isEqualTo(1);
+		assertThat(testee.cachedChars()).isEqualTo(22);
+
+		testee.linesOf(first, TabSize.spaces(2));
+		testee.linesOf(second, TabSize.spaces(2));
+
+		assertThat(testee.hits()).isEqualTo(2);
+		assertThat(testee.misses()).isEqualTo(4);
+	}
+
+	@Test
+	public void missingFileIsNotCached() {
+		SourceFileCache testee = new SourceFileCache(1024, this::load);
+
+		assertThat(testee.linesOf(tempDir.resolve("Missing.java"), TabSize.spaces(2))).isEmpty();
+		assertThat(testee.linesOf(tempDir, TabSize.spaces(2))).isEmpty();
+		assertThat(loaded.get()).isEqualTo(0);
+	}
+
+	private List<String> load(Path path, TabSize tabSize) {
+		loaded.incrementAndGet();
+		return Resources.tabToSpaces(Resources.readLines(() -> Files.newInputStream(path)), tabSize.asSpaces());
+	}
+
+	private Path write(String fileName, String content) throws IOException {
+		return Files.write(tempDir.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
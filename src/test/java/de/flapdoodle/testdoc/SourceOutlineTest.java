@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceOutlineTest {
+
+	private static final List<String> SOURCE = Arrays.asList(
+		/*  1 */ "public class Sample {",
+		/*  2 */ "  public void first() throws java.io.IOException, RuntimeException {",
+		/*  3 */ "    if (true) {",
+		/*  4 */ "      String brace = \"}\"; // }",
+		/*  5 */ "    }",
+		/*  6 */ "    Runnable r = new Runnable() {",
+		/*  7 */ "      public void run() {",
+		/*  8 */ "        /* } */ char c = '}';",
+		/*  9 */ "      }",
+		/* 10 */ "    };",
+		/* 11 */ "    Runnable l = () -> {",
+		/* 12 */ "      first();",
+		/* 13 */ "    };",
+		/* 14 */ "  }",
+		/* 15 */ "",
+		/* 16 */ "  public",
+		/* 17 */ "  <T> T second(",
+		/* 18 */ "    T value",
+		/* 19 */ "  ) {",
+		/* 20 */ "    return value;",
+		/* 21 */ "  }",
+		/* 22 */ "}"
+	);
+
+	@Test
+	public void methodsAreFoundByBraceDepth() {
+		SourceOutline outline = SourceOutline.of(SOURCE);
+
+		assertThat(outline.methods()).extracting(SourceOutline.Method::toString)
+			.containsExactly("first[2-14]", "run[7-9]", "second[17-21]");
+	}
+
+	@Test
+	public void outlineReadFromDiskCacheIsTheSame(@TempDir Path cacheDir) {
+		DiskCache writing = new DiskCache(cacheDir);
+		DiskCache reading = new DiskCache(cacheDir);
+
+		assertThat(SourceOutline.of(SOURCE, Optional.of(writing)).methods()).extracting(SourceOutline.Method::toString)
+			.containsExactly("first[2-14]", "run[7-9]", "second[17-21]");
+		assertThat(SourceOutline.of(SOURCE, Optional.of(reading)).methods()).extracting(SourceOutline.Method::toString)
+			.containsExactly("first[2-14]", "run[7-9]", "second[17-21]");
+		assertThat(writing.misses()).isEqualTo(1);
+		assertThat(reading.hits()).isEqualTo(1);
+	}
+
+	@Test
+	public void innermostMethodWithMatchingNameIsUsed() {
+		SourceOutline outline = SourceOutline.of(SOURCE);
+
+		assertThat(outline.methodAt(8, "run")).map(SourceOutline.Method::name).contains("run");
+		assertThat(outline.methodAt(8, "first")).map(SourceOutline.Method::name).contains("first");
+		assertThat(outline.methodAt(12, "lambda$first$0")).map(SourceOutline.Method::name).contains("first");
+		assertThat(outline.methodAt(20, "second")).map(SourceOutline.Method::name).contains("second");
+		assertThat(outline.methodAt(15, "first")).isEmpty();
+	}
+
+	@Test
+	public void packageAndImportsAreFoundOutsideOfCommentsAndStrings() {
+		SourceOutline outline = SourceOutline.of(Arrays.asList(
+			/* 1 */ "/* package foo; */",
+			/* 2 */ "package de.flapdoodle",
+			/* 3 */ "  .sample;",
+			/* 4 */ "",
+			/* 5 */ "import java.util.List; // import",
+			/* 6 */ "import static java.util",
+			/* 7 */ "  .Arrays.asList;",
+			/* 8 */ "class Sample {",
+			/* 9 */ "  String s = \"import x;\";",
+			/* 10 */ "}"
+		));
+
+		assertThat(outline.packageEndLineNumber()).isEqualTo(3);
+		assertThat(outline.isImport(1)).isFalse();
+		assertThat(outline.isImport(4)).isFalse();
+		assertThat(outline.isImport(5)).isTrue();
+		assertThat(outline.isImport(6)).isTrue();
+		assertThat(outline.isImport(7)).isTrue();
+		assertThat(outline.isImport(9)).isFalse();
+	}
+}
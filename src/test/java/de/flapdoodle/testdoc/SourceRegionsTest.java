@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SourceRegionsTest {
+
+	@Test
+	public void regionsWithoutMarkerLines() {
+		List<String> lines = Arrays.asList(
+			"before",
+			"// tag::outer[]",
+			"a",
+			"# tag::inner[]",
+			"b",
+			"# end::inner[]",
+			"c",
+			"// end::outer[]",
+			"<!-- tag::outer[] -->",
+			"d",
+			"<!-- end::outer[] -->",
+			"// tag::open[]",
+			"e"
+		);
+
+		SourceRegions regions = SourceRegions.of(lines);
+
+		assertThat(regions.names()).containsExactly("inner", "outer", "open");
+		assertThat(regions.region(lines, "outer")).contains(Arrays.asList("a", "b", "c", "d"));
+		assertThat(regions.region(lines, "inner")).contains(Arrays.asList("b"));
+		assertThat(regions.region(lines, "open")).contains(Arrays.asList("e"));
+		assertThat(regions.region(lines, "missing")).isEmpty();
+	}
+
+	@Test
+	public void endWithoutTagIsIgnored() {
+		List<String> lines = Arrays.asList("// end::foo[]", "a", "tag::x[] is not a marker without word boundary: xtag::y[]");
+
+		SourceRegions regions = SourceRegions.of(lines);
+
+		assertThat(regions.names()).containsExactly("x");
+		assertThat(regions.region(lines, "x")).contains(Arrays.asList());
+	}
+
+	@Test
+	public void taggedRegionOfSourceCode() {
+		// tag::sample[]
+		int answer = 42;
+
+		// end::sample[]
+		assertThat(answer).isEqualTo(42);
+
+		assertThat(Resources.sourceCodeOf(SourceRegionsTest.class, TabSize.spaces(2), "sample"))
+			.contains(Arrays.asList("    int answer = 42;", ""));
+		assertThat(Resources.sourceCodeOf(SourceRegionsTest.class, TabSize.spaces(2), "sample", Includes.Trim))
+			.contains(Arrays.asList("    int answer = 42;"));
+		assertThatThrownBy(() -> Resources.sourceCodeOf(SourceRegionsTest.class, TabSize.spaces(2), "missing"))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("could not find region missing");
+	}
+
+	@Test
+	public void regionIndexIsSharedBySourceLines() {
+		SourceLines lines = SourceLines.of(Arrays.asList("tag::a[]", "1", "end::a[]", "tag::b[]", "2", "end::b[]"));
+
+		assertThat(lines.regions()).isSameAs(lines.regions());
+		assertThat(lines.region("a")).contains(Arrays.asList("1"));
+		assertThat(lines.region("b")).contains(Arrays.asList("2"));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceRootsTest {
+
+	@TempDir
+	Path baseDir;
+
+	@Test
+	public void rootsOfAllModulesAreFound() throws IOException {
+		touch("pom.xml");
+		touch("module-a/pom.xml");
+		touch("module-a/src/main/java/a/A.java");
+		touch("module-a/target/generated-sources/annotations/a/ImmutableA.java");
+		touch("nested/module-b/build.gradle");
+		touch("nested/module-b/src/test/java/b/BTest.java");
+		touch("module-a/target/module-c/pom.xml");
+
+		assertThat(SourceRoots.defaultRoots(baseDir)).containsExactly(
+			baseDir.resolve("module-a/src/main/java"),
+			baseDir.resolve("module-a/target/generated-sources/annotations"),
+			baseDir.resolve("nested/module-b/src/test/java")
+		);
+	}
+
+	@Test
+	public void testSourcesComeBeforeMainSources() throws IOException {
+		touch("src/main/java/a/A.java");
+		touch("src/test/java/a/A.java");
+
+		SourceRoots testee = SourceRoots.of(SourceRoots.defaultRoots(baseDir));
+
+		assertThat(testee.sourceOf(getClass(), "a/A.java")).contains(baseDir.resolve("src/test/java/a/A.java"));
+		assertThat(testee.sourceOf(getClass(), "a/Missing.java")).isEmpty();
+	}
+
+	@Test
+	public void filesCreatedAfterIndexingAreFound() throws IOException {
+		touch("src/main/java/a/A.java");
+
+		SourceRoots testee = SourceRoots.of(SourceRoots.defaultRoots(baseDir));
+		touch("src/main/java/a/B.java");
+
+		assertThat(testee.sourceOf(getClass(), "a/B.java")).contains(baseDir.resolve("src/main/java/a/B.java"));
+	}
+
+	@Test
+	public void probesAreCachedAndMissesRetriedLater() throws IOException {
+		touch("src/main/java/a/A.java");
+		AtomicLong nanoTime = new AtomicLong();
+		SourceRoots testee = SourceRoots.of(SourceRoots.defaultRoots(baseDir), new LookupCache<>(Duration.ofSeconds(1), nanoTime::get));
+
+		assertThat(testee.sourceOf(getClass(), "a/B.java")).isEmpty();
+		touch("src/main/java/a/B.java");
+		assertThat(testee.sourceOf(getClass(), "a/B.java")).isEmpty();
+
+		nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+		assertThat(testee.sourceOf(getClass(), "a/B.java")).contains(baseDir.resolve("src/main/java/a/B.java"));
+
+		Files.delete(baseDir.resolve("src/main/java/a/B.java"));
+		nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+		assertThat(testee.sourceOf(getClass(), "a/B.java")).contains(baseDir.resolve("src/main/java/a/B.java"));
+	}
+
+	@Test
+	public void sourceOfThisProject() {
+		SourceRoots testee = SourceRoots.instance();
+
+		assertThat(testee.sourceOf(FooClass.class, "de/flapdoodle/testdoc/FooClass.java"))
+			.contains(Paths.get("src/test/java/de/flapdoodle/testdoc/FooClass.java").toAbsolutePath());
+	}
+
+	private void touch(String path) throws IOException {
+		Path file = baseDir.resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.createFile(file);
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import de.flapdoodle.testdoc.Stacktraces.Scope;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class StackFramesTest {
+
+	private static final String JAVA9_VERSION = "META-INF/versions/9/";
+
+	@Test
+	public void java8VersionIsUsedFromClassesDirectory() {
+		assertThat(StackFrames.strategy()).isEqualTo("Throwable.getStackTrace");
+	}
+
+	@Test
+	public void stackWalkerReportsSameCallerLine() throws Exception {
+		Path classes = locationOf(StackFrames.class);
+		assumeTrue(Files.exists(classes.resolve(JAVA9_VERSION + "de/flapdoodle/testdoc/StackFrames.class")),
+			"no java 9 version of StackFrames compiled");
+
+		ClassLoader java9 = new MultiReleaseClassLoader(classes, locationOf(StackFramesTest.class), StackFramesTest.class.getClassLoader());
+		@SuppressWarnings("unchecked")
+		Supplier<List<String>> probeWithStackWalker = (Supplier<List<String>>) java9.loadClass(Probe.class.getName())
+			.getDeclaredConstructor()
+			.newInstance();
+
+		List<String> withStackWalker = probeWithStackWalker.get();
+		List<String> withStackTrace = new Probe().get();
+
+		assertThat(withStackWalker.get(0)).isEqualTo("StackWalker");
+		assertThat(withStackTrace.get(0)).isEqualTo("Throwable.getStackTrace");
+		assertThat(withStackWalker.subList(1, withStackWalker.size()))
+			.isEqualTo(withStackTrace.subList(1, withStackTrace.size()));
+		assertThat(withStackTrace.get(1)).contains("methodName=get");
+	}
+
+	/**
+	 * calls Stacktraces like Recording does, loaded once with each StackFrames version
+	 */
+	public static class Probe implements Supplier<List<String>> {
+		@Override
+		public List<String> get() {
+			return Arrays.asList(StackFrames.strategy(), recorderCall(), String.valueOf(Stacktraces.currentLine(Scope.Caller)));
+		}
+
+		private static String recorderCall() {
+			return String.valueOf(Stacktraces.currentLine(Scope.CallerOfCaller));
+		}
+	}
+
+	private static Path locationOf(Class<?> clazz) throws URISyntaxException {
+		return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+	}
+
+	/**
+	 * loads the classes of this package like a multi-release jar would on java 9+
+	 */
+	private static final class MultiReleaseClassLoader extends ClassLoader {
+		private final Path classes;
+		private final Path testClasses;
+
+		MultiReleaseClassLoader(Path classes, Path testClasses, ClassLoader parent) {
+			super(parent);
+			this.classes = classes;
+			this.testClasses = testClasses;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith(StackFrames.class.getPackage().getName() + ".")) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> ret = findLoadedClass(name);
+				if (ret == null) {
+					ret = findClass(name);
+				}
+				if (resolve) {
+					resolveClass(ret);
+				}
+				return ret;
+			}
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			String fileName = name.replace('.', '/') + ".class";
+			for (Path candidate : Arrays.asList(classes.resolve(JAVA9_VERSION + fileName), classes.resolve(fileName), testClasses.resolve(fileName))) {
+				if (Files.exists(candidate)) {
+					try {
+						byte[] bytes = Files.readAllBytes(candidate);
+						return defineClass(name, bytes, 0, bytes.length);
+					}
+					catch (IOException iox) {
+						throw new ClassNotFoundException(name, iox);
+					}
+				}
+			}
+			throw new ClassNotFoundException(name);
+		}
+	}
+}
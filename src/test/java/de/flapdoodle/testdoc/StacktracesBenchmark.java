@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import de.flapdoodle.testdoc.Stacktraces.Scope;
+
+/**
+ * not a test, run it with the packaged jar in front of the test classes
+ * to compare the multi-release version:
+ *
+ * java -cp target/de.flapdoodle.testdoc-*.jar:target/test-classes de.flapdoodle.testdoc.StacktracesBenchmark
+ */
+public class StacktracesBenchmark {
+
+	private static final int STACK_DEPTH = 120;
+	private static final int ROUNDS = 5;
+	private static final int MARKERS = 100_000;
+
+	private static volatile Line sink;
+
+	public static void main(String[] args) {
+		System.out.println("java " + System.getProperty("java.version") + ", StackFrames uses " + StackFrames.strategy()
+			+ ", stack depth " + STACK_DEPTH);
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long legacy = atDepth(STACK_DEPTH, StacktracesBenchmark::legacyMarkers);
+			long current = atDepth(STACK_DEPTH, StacktracesBenchmark::currentMarkers);
+			System.out.printf("round %d: getStackTrace %6d ns/marker, Stacktraces.currentLine %6d ns/marker%n",
+				round, legacy / MARKERS, current / MARKERS);
+		}
+	}
+
+	private static long atDepth(int depth, LongSupplier benchmark) {
+		return depth > 0 ? atDepth(depth - 1, benchmark) : benchmark.get();
+	}
+
+	private static long legacyMarkers() {
+		long start = System.nanoTime();
+		for (int i = 0; i < MARKERS; i++) {
+			StackTraceElement element = new RuntimeException().getStackTrace()[1];
+			sink = Line.builder()
+				.className(element.getClassName())
+				.fileName(element.getFileName())
+				.methodName(element.getMethodName())
+				.lineNumber(element.getLineNumber())
+				.build();
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long currentMarkers() {
+		long start = System.nanoTime();
+		for (int i = 0; i < MARKERS; i++) {
+			sink = Stacktraces.currentLine(Scope.Caller);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private interface LongSupplier {
+		long get();
+	}
+}
@@ -19,10 +19,24 @@ package de.flapdoodle.testdoc;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -86,6 +100,48 @@ public class TemplateTest {
 		}
 	}
 
+	@Test
+	public void customDelimiters() {
+		assertEquals("a [foo] b [bar]", Template.render(Template.of("a @@foo@@ b @@bar@@", ReplacementPattern.of("@@", "@@")), var -> "[" + var + "]"));
+		assertEquals("<%>[foo]%>", Template.render(Template.of("<%><%foo%>%>", ReplacementPattern.of("<%", "%>")), var -> "[" + var + "]"));
+		assertEquals("[foo-bar] [x]", Template.render(Template.of("<-foo-bar-> <-x->", ReplacementPattern.of("<-", "->")), var -> "[" + var + "]"));
+		assertEquals("[ä ö] ${foo}", Template.render(Template.of("#(ä ö) ${foo}", ReplacementPattern.of("#(", ")", "äö ")), var -> "[" + var + "]"));
+	}
+
+	@Test
+	public void delimiterScannerFindsSamePlaceholdersAsRegex() {
+		List<Delimiters> patterns = Arrays.stream(ReplacementPattern.values())
+			.map(ReplacementPattern::delimiters)
+			.collect(Collectors.toCollection(ArrayList::new));
+		patterns.add(ReplacementPattern.of("<-", "->"));
+		patterns.add(ReplacementPattern.of("@", "@", "ab@"));
+		List<String> sources = Arrays.asList("", "${", "${}", "$${a}}", "${${a}", "{{{a}}}", "{{a}}}}", "<-a-b-->", "<--->", "@a@b@@", "@@@", "x ${a.b:c-d_e} {{f}} y");
+
+		int[] label = new int[2];
+		for (Delimiters pattern : patterns) {
+			for (String source : sources) {
+				Matcher matcher = pattern.matcher(source);
+				int from = 0;
+				while (matcher.find()) {
+					int start = pattern.find(source, from, label);
+					assertThat(start).describedAs("%s in '%s'", pattern, source).isEqualTo(matcher.start());
+					assertThat(source.substring(label[0], label[1])).isEqualTo(matcher.group("label"));
+					from = label[1] + pattern.close().length();
+					assertThat(from).isEqualTo(matcher.end());
+				}
+				assertThat(pattern.find(source, from, label)).describedAs("%s in '%s'", pattern, source).isEqualTo(-1);
+			}
+		}
+	}
+
+	@Test
+	public void patternsWithSameDelimitersAreEqual() {
+		assertThat(ReplacementPattern.of("${", "}")).isEqualTo(ReplacementPattern.DEFAULT.delimiters())
+			.hasSameHashCodeAs(ReplacementPattern.DEFAULT.delimiters());
+		assertThat(ReplacementPattern.of("${", "}", "ab")).isEqualTo(ReplacementPattern.of("${", "}", "bab"))
+			.isNotEqualTo(ReplacementPattern.DEFAULT.delimiters());
+	}
+
 	@Test
 	public void mapReplacementsWithCrazyName() {
 		String key = "abc091.-:_2123ya23";
@@ -96,6 +152,107 @@ public class TemplateTest {
 		assertEquals(">>DONE<<", result);
 	}
 
+	@Test
+	public void nullFromLookUpIsRenderedAsNull() throws IOException {
+		Template template = Template.of("a ${foo} b");
+		assertEquals("a null b", Template.render(template, var -> null));
+
+		StringWriter writer = new StringWriter();
+		Template.renderTo(template, var -> null, writer);
+		assertEquals("a null b", writer.toString());
+	}
+
+	@Test
+	public void missingMapReplacementFailsWithFirstMissingKey() {
+		Map<String, String> map = new LinkedHashMap<>();
+		map.put("foo", "FOO");
+
+		Assertions.assertThatThrownBy(() -> Template.render(Template.of("${foo} ${bar} ${baz}"), map))
+			.isInstanceOf(NullPointerException.class)
+			.hasMessage("could not resolve bar in [foo]");
+		Assertions.assertThatThrownBy(() -> Template.render(Template.of("${foo} ${bar}"), map, (key, keys) -> null))
+			.isInstanceOf(NullPointerException.class)
+			.hasMessage("fallback return null for bar");
+	}
+
+	@Test
+	public void templatesReadFromDiskCacheRenderLikeParsedOnes(@TempDir Path cacheDir) {
+		String source = "a ${foo} b {{bar}} ${foo}";
+		Function<String, Fragment> lookUp = var -> Fragment.of("[" + var + "]");
+		DiskCache writing = new DiskCache(cacheDir);
+		DiskCache reading = new DiskCache(cacheDir);
+
+		CompiledTemplate parsed = CompiledTemplate.parse(source, ReplacementPattern.DEFAULT.delimiters(), Optional.empty());
+		CompiledTemplate written = CompiledTemplate.parse(source, ReplacementPattern.DEFAULT.delimiters(), Optional.of(writing));
+		CompiledTemplate read = CompiledTemplate.parse(source, ReplacementPattern.DEFAULT.delimiters(), Optional.of(reading));
+
+		assertThat(writing.misses()).isEqualTo(1);
+		assertThat(reading.hits()).isEqualTo(1);
+		assertEquals("a [foo] b {{bar}} [foo]", parsed.render(parsed.bind(lookUp)));
+		assertEquals(parsed.render(parsed.bind(lookUp)), written.render(written.bind(lookUp)));
+		assertEquals(parsed.render(parsed.bind(lookUp)), read.render(read.bind(lookUp)));
+		assertThat(read.labels()).containsExactlyElementsOf(parsed.labels());
+	}
+
+	@Test
+	public void templateIsParsedOnlyOnce() {
+		Template template = Template.of("${foo} and ${bar} and ${foo}");
+
+		assertThat(template.compiled()).isSameAs(template.compiled());
+		assertThat(template.compiled().placeholders()).isEqualTo(3);
+		assertThat(template.compiled().labels()).containsExactly("foo", "bar");
+		assertEquals("[foo] and [bar] and [foo]", Template.render(template, var -> "[" + var + "]"));
+	}
+
+	@Test
+	public void placeholdersAreBoundToSlots() {
+		CompiledTemplate compiled = Template.of("${foo} and ${bar} and ${foo}").compiled();
+
+		assertThat(compiled.slots()).isEqualTo(2);
+		assertThat(compiled.slotOf("foo")).isEqualTo(0);
+		assertThat(compiled.slotOf("bar")).isEqualTo(1);
+		assertThat(compiled.slotOf("missing")).isEqualTo(-1);
+
+		Map<String, Integer> lookUps = new LinkedHashMap<>();
+		Fragment[] slots = compiled.bind(var -> {
+			lookUps.merge(var, 1, Integer::sum);
+			return Fragment.of("[" + var + "]");
+		});
+		assertThat(lookUps).containsEntry("foo", 1).containsEntry("bar", 1);
+		assertEquals("[foo] and [bar] and [foo]", compiled.render(slots));
+
+		slots[compiled.slotOf("foo")] = Fragment.of("1");
+		assertEquals("1 and [bar] and 1", compiled.render(slots));
+	}
+
+	@Test
+	public void sharedTemplatesAreCompiledOnce() {
+		TemplateReference reference = TemplateReference.of(TemplateTest.class, "howto.md");
+
+		Template template = Templates.templateOf(reference).get();
+
+		assertThat(Templates.templateOf(TemplateReference.of(TemplateTest.class, "howto.md"))).containsSame(template);
+		assertThat(Templates.templateOf(TemplateReference.of(TemplateTest.class, "howto.md", ReplacementPattern.DOUBLE_CURLY)).get())
+			.isNotSameAs(template);
+		assertThat(Templates.templateOf(TemplateReference.of(TemplateTest.class, "missing.md"))).isEmpty();
+	}
+
+	@Test
+	public void streamedRenderingMatchesRenderedString() throws IOException {
+		String largeValue = String.join("", Collections.nCopies(5000, "äöü€"));
+		Template template = Template.of("start ${foo} middle ${bar} end €");
+		Function<String, String> lookUp = var -> var.equals("foo") ? largeValue : "[" + var + "]";
+		String expected = Template.render(template, lookUp);
+
+		StringWriter writer = new StringWriter();
+		Template.renderTo(template, lookUp, writer);
+		assertEquals(expected, writer.toString());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Template.renderTo(template, lookUp, Channels.newChannel(bytes), StandardCharsets.UTF_8);
+		assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+
 	private static String render(String source, Function<String, String> variableLookUp) {
 		return Template.render(Template.of(source), variableLookUp);
 	}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016
+ *   Michael Mosmann <michael@mosmann.de>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.testdoc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TextTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void linesAreSplitLikeBufferedReaderDoes() {
+		for (String src : Arrays.asList("", "\n", "a", "a\n", "a\n\n", "a\r\nb", "a\rb\r", "\r\n\r\n", "a\n\rb", "a\n\n  b\n")) {
+			Text text = Text.of(src);
+			assertThat(text.lines())
+				.describedAs("lines of '%s'", src)
+				.isEqualTo(new BufferedReader(new StringReader(src)).lines().collect(Collectors.toList()));
+			assertThat(text.joinedWithNewLine())
+				.isEqualTo(String.join("\n", text.lines()));
+		}
+	}
+
+	@Test
+	public void joinedContentIsNotCopiedIfNothingChanges() {
+		String src = "first\nsecond";
+		assertThat(Text.of(src).joinedWithNewLine()).isSameAs(src);
+	}
+
+	@Test
+	public void charsetIsUsedForFilesAndStreams() throws IOException {
+		String src = "grüße\n€";
+		Path file = Files.write(tempDir.resolve("text.txt"), src.getBytes(StandardCharsets.UTF_8));
+
+		assertThat(TextReader.read(file, StandardCharsets.UTF_8).lines()).containsExactly("grüße", "€");
+		assertThat(TextReader.read(new ByteArrayInputStream(src.getBytes(StandardCharsets.ISO_8859_1)), StandardCharsets.ISO_8859_1).lines())
+			.containsExactly("grüße", "?");
+	}
+
+	@Test
+	public void largeFilesAndStreams() throws IOException {
+		String line = String.join("", Collections.nCopies(100, "ä"));
+		String src = String.join("\n", Collections.nCopies(20000, line));
+		byte[] bytes = src.getBytes(StandardCharsets.UTF_8);
+		Path file = Files.write(tempDir.resolve("large.txt"), bytes);
+
+		Text fromFile = TextReader.read(file, StandardCharsets.UTF_8);
+		Text fromStream = TextReader.read(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+
+		assertThat(fromFile.lineCount()).isEqualTo(20000);
+		assertThat(fromFile.line(19999)).isEqualTo(line);
+		assertThat(fromStream.content()).isEqualTo(src);
+	}
+}